@@ -21,9 +21,11 @@ package org.sonar.cxx;
 
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.AuditListener;
 import com.sonar.sslr.api.CommentAnalyser;
 import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.ParsingState;
 import com.sonar.sslr.squid.AstScanner;
 import com.sonar.sslr.squid.SourceCodeBuilderCallback;
 import com.sonar.sslr.squid.SourceCodeBuilderVisitor;
@@ -47,6 +49,8 @@ import org.sonar.squid.indexer.QueryByType;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 public final class CxxAstScanner {
 
@@ -69,7 +73,7 @@ public final class CxxAstScanner {
     return (SourceFile) sources.iterator().next();
   }
 
-  public static AstScanner<CxxGrammar> create(CxxConfiguration conf, SquidAstVisitor<CxxGrammar>... visitors) {
+  public static AstScanner<CxxGrammar> create(CxxConfiguration conf, SquidAstVisitor<CxxGrammar>... externalVisitors) {
     final SquidAstVisitorContextImpl<CxxGrammar> context = new SquidAstVisitorContextImpl<CxxGrammar>(new SourceProject("Cxx Project"));
     final Parser<CxxGrammar> parser = CxxParser.create(context, conf);
 
@@ -102,52 +106,96 @@ public final class CxxAstScanner {
           }
         });
 
+    final CxxScanStatistics statistics = conf.getStatistics();
+    VisitorRegistry visitors = new VisitorRegistry(builder, statistics);
+    if (statistics != null) {
+      // registered first, so that its leaveFile() is called after all others
+      builder.withSquidAstVisitor(new SquidAstVisitor<CxxGrammar>() {
+        private long start;
+
+        @Override
+        public void visitFile(AstNode astNode) {
+          start = System.nanoTime();
+        }
+
+        @Override
+        public void leaveFile(AstNode astNode) {
+          statistics.addPhase(CxxScanStatistics.VISITING, System.nanoTime() - start);
+          statistics.endFile(context.getFile().getPath());
+        }
+      });
+    }
+
+    /* Memory */
+    visitors.add(new SquidAstVisitor<CxxGrammar>() {
+      @Override
+      public void leaveFile(AstNode astNode) {
+        // The parser memoizes every matched subtree and keeps the table until the
+        // next file is parsed, which pins the whole tree of the previous translation
+        // unit. Drop it as soon as the visitors are done with the file.
+        ParsingState parsingState = parser.getParsingState();
+        if (parsingState != null) {
+          parsingState.deleteMemoizedAstAfter(0);
+        }
+      }
+    });
+
     /* Functions */
-    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<CxxGrammar>(new SourceCodeBuilderCallback() {
+    visitors.add(new SourceCodeBuilderVisitor<CxxGrammar>(new SourceCodeBuilderCallback() {
       public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
-        StringBuilder sb = new StringBuilder();
-        for (Token token : astNode.findFirstChild(parser.getGrammar().declaratorId).getTokens()) {
-          sb.append(token.getValue());
-        }
-        String functionName = sb.toString();
-        SourceFunction function = new SourceFunction(functionName + ":" + astNode.getToken().getLine());
+        StringBuilder key = new StringBuilder();
+        appendTokenValues(key, parser, astNode.findFirstChild(parser.getGrammar().declaratorId));
+        key.append(':').append(astNode.getTokenLine());
+        SourceFunction function = new SourceFunction(key.toString());
         function.setStartAtLine(astNode.getTokenLine());
         return function;
       }
     }, parser.getGrammar().functionDefinition));
 
-    builder.withSquidAstVisitor(CounterVisitor.<CxxGrammar> builder()
+    visitors.add(CounterVisitor.<CxxGrammar> builder()
         .setMetricDef(CxxMetric.FUNCTIONS)
         .subscribeTo(parser.getGrammar().functionDefinition)
         .build());
 
     /* Classes */
-    builder.withSquidAstVisitor(new SourceCodeBuilderVisitor<CxxGrammar>(new SourceCodeBuilderCallback() {
+    visitors.add(new SourceCodeBuilderVisitor<CxxGrammar>(new SourceCodeBuilderCallback() {
       public SourceCode createSourceCode(SourceCode parentSourceCode, AstNode astNode) {
-        AstNode classNameAst = astNode.findFirstChild(parser.getGrammar().className);
-        String className = classNameAst == null ? "" : classNameAst.getChild(0).getTokenValue();
-        SourceClass cls = new SourceClass(className + ":" + astNode.getToken().getLine());
+        // only the class head, the body of an anonymous class has names of its own
+        AstNode classHeadName = astNode.findFirstDirectChild(parser.getGrammar().classHead)
+            .findFirstDirectChild(parser.getGrammar().classHeadName);
+        AstNode classNameAst = classHeadName == null ? null
+            : classHeadName.findFirstDirectChild(parser.getGrammar().className);
+        StringBuilder key = new StringBuilder();
+        if (classNameAst != null) {
+          key.append(classNameAst.getChild(0).getTokenValue());
+        }
+        key.append(':').append(astNode.getTokenLine());
+        SourceClass cls = new SourceClass(key.toString());
         cls.setStartAtLine(astNode.getTokenLine());
         return cls;
       }
     }, parser.getGrammar().classSpecifier));
 
-    builder.withSquidAstVisitor(CounterVisitor.<CxxGrammar> builder()
+    visitors.add(CounterVisitor.<CxxGrammar> builder()
         .setMetricDef(CxxMetric.CLASSES)
         .subscribeTo(parser.getGrammar().classSpecifier)
         .build());
 
+    /* Design */
+    // registered after the class builder, so that it finds the squid classes
+    visitors.add(new CxxClassMetricVisitor(new CxxRfcMetric(), new CxxCohesionMetric()));
+
     /* Metrics */
-    builder.withSquidAstVisitor(new LinesVisitor<CxxGrammar>(CxxMetric.LINES));
-    builder.withSquidAstVisitor(new CxxLinesOfCodeVisitor<CxxGrammar>(CxxMetric.LINES_OF_CODE));
+    visitors.add(new LinesVisitor<CxxGrammar>(CxxMetric.LINES));
+    visitors.add(new CxxLinesOfCodeVisitor<CxxGrammar>(CxxMetric.LINES_OF_CODE));
 
-    builder.withSquidAstVisitor(CommentsVisitor.<CxxGrammar> builder().withCommentMetric(CxxMetric.COMMENT_LINES)
+    visitors.add(CommentsVisitor.<CxxGrammar> builder().withCommentMetric(CxxMetric.COMMENT_LINES)
         .withBlankCommentMetric(CxxMetric.COMMENT_BLANK_LINES)
         .withNoSonar(true)
         .withIgnoreHeaderComment(conf.getIgnoreHeaderComments())
         .build());
 
-    builder.withSquidAstVisitor(CounterVisitor.<CxxGrammar> builder()
+    visitors.add(CounterVisitor.<CxxGrammar> builder()
         .setMetricDef(CxxMetric.STATEMENTS)
         .subscribeTo(parser.getGrammar().statement)
         .build());
@@ -167,17 +215,72 @@ public final class CxxAstScanner {
       CxxPunctuator.OR,
       CxxPunctuator.QUEST
     };
-    builder.withSquidAstVisitor(ComplexityVisitor.<CxxGrammar> builder()
+    visitors.add(ComplexityVisitor.<CxxGrammar> builder()
         .setMetricDef(CxxMetric.COMPLEXITY)
         .subscribeTo(complexityAstNodeType)
         .build());
 
     /* External visitors (typically Check ones) */
-    for (SquidAstVisitor<CxxGrammar> visitor : visitors) {
-      builder.withSquidAstVisitor(visitor);
+    for (SquidAstVisitor<CxxGrammar> visitor : externalVisitors) {
+      visitors.add(visitor);
     }
 
     return builder.build();
   }
 
+  /**
+   * Registers visitors on the scanner builder, wrapping them to measure
+   * their execution time when statistics are collected.
+   */
+  private static class VisitorRegistry {
+    private final AstScanner.Builder<CxxGrammar> builder;
+    private final CxxScanStatistics statistics;
+    private final Set<String> names = new HashSet<String>();
+
+    VisitorRegistry(AstScanner.Builder<CxxGrammar> builder, CxxScanStatistics statistics) {
+      this.builder = builder;
+      this.statistics = statistics;
+    }
+
+    void add(SquidAstVisitor<CxxGrammar> visitor) {
+      // audit listeners get recognition errors reported by the scanner, so they
+      // have to be registered as they are
+      if (statistics == null || visitor instanceof AuditListener) {
+        builder.withSquidAstVisitor(visitor);
+      } else {
+        builder.withSquidAstVisitor(CxxTimedVisitor.wrap(visitor, uniqueName(visitor), statistics));
+      }
+    }
+
+    private String uniqueName(SquidAstVisitor<CxxGrammar> visitor) {
+      Class<?> clazz = visitor.getClass();
+      String name = clazz.isAnonymousClass() ? clazz.getName() : clazz.getSimpleName();
+      String unique = name;
+      for (int i = 2; !names.add(unique); i++) {
+        unique = name + " #" + i;
+      }
+      return unique;
+    }
+  }
+
+  /**
+   * Appends the values of all tokens covered by the given node. The tokens are read
+   * from the parser's token array by the node's token indexes, which avoids collecting
+   * them by walking the whole subtree.
+   */
+  private static void appendTokenValues(StringBuilder sb, Parser<CxxGrammar> parser, AstNode node) {
+    ParsingState parsingState = parser.getParsingState();
+    int from = node.getFromIndex();
+    int to = node.getToIndex();
+    if (parsingState != null && from >= 0 && from < to && to <= parsingState.lexerSize) {
+      for (int i = from; i < to; i++) {
+        sb.append(parsingState.readToken(i).getValue());
+      }
+    } else {
+      for (Token token : node.getTokens()) {
+        sb.append(token.getValue());
+      }
+    }
+  }
+
 }
@@ -0,0 +1,456 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.squid.SquidAstVisitor;
+import org.sonar.cxx.api.CxxGrammar;
+import org.sonar.cxx.api.CxxKeyword;
+import org.sonar.cxx.api.CxxPunctuator;
+import org.sonar.squid.api.SourceClass;
+import org.sonar.squid.api.SourceCode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Visitor computing design metrics of the classes of a file. The fields and
+ * member functions of a class are collected once from its body; member
+ * function definitions are attributed to their class by the enclosing class body
+ * or by the class name qualifying their declarator, so that definitions outside of
+ * the class body count as well. The parts of a class spread over several files are
+ * looked at per file.
+ *
+ * Classes are told apart by their names qualified with the enclosing classes;
+ * every anonymous class is a class of its own. A qualified definition belongs to
+ * the class declared in the file whose qualified name ends with the qualifier.
+ * Otherwise the qualifier is taken for a class declared in another file, unless
+ * it names a namespace defined, aliased or used in the file: a definition like
+ * 'void ns::f() {}' is a free function then. All metrics are computed from these tables when the file
+ * has been visited.
+ */
+public class CxxClassMetricVisitor extends SquidAstVisitor<CxxGrammar> {
+
+  /**
+   * A metric computed from the members of the classes of a file
+   */
+  public interface ClassMetric {
+    /**
+     * Computes the metric for the classes of a file and saves it on the file
+     * and on the squid classes
+     */
+    void measure(SourceCode file, Collection<ClassMembers> classes);
+  }
+
+  /**
+   * The members of a class as far as they are known in the scanned file
+   */
+  public static final class ClassMembers {
+    private final String key;
+    private final String name;
+    private boolean declared;
+    private SourceClass sourceClass;
+    private final Set<String> fields = new LinkedHashSet<String>();
+    private final Set<String> functions = new LinkedHashSet<String>();
+    private final Map<String, MemberFunction> definitions = new LinkedHashMap<String, MemberFunction>();
+
+    ClassMembers(String key, String name) {
+      this.key = key;
+      this.name = name;
+    }
+
+    /**
+     * The name qualified with the enclosing classes
+     */
+    public String getKey() {
+      return key;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Whether the body of the class is in the scanned file
+     */
+    public boolean isDeclared() {
+      return declared;
+    }
+
+    /**
+     * The squid class of the class body or null
+     */
+    public SourceClass getSourceClass() {
+      return sourceClass;
+    }
+
+    public Set<String> getFields() {
+      return fields;
+    }
+
+    /**
+     * The names of the declared and of the defined member functions
+     */
+    public Set<String> getFunctions() {
+      return functions;
+    }
+
+    /**
+     * The member functions defined in the scanned file, overloads are merged
+     */
+    public Collection<MemberFunction> getDefinitions() {
+      return definitions.values();
+    }
+
+    boolean isConstructorOrDestructor(String function) {
+      return function.equals(name) || function.equals("~" + name);
+    }
+  }
+
+  /**
+   * The names a member function definition refers to
+   */
+  public static final class MemberFunction {
+    private final ClassMembers owner;
+    private final String name;
+    private final Set<String> memberReferences = new HashSet<String>();
+    private final Set<String> calls = new HashSet<String>();
+
+    MemberFunction(ClassMembers owner, String name) {
+      this.owner = owner;
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Names used unqualified, through 'this' or qualified by the own class;
+     * these are the candidates for members of the own class
+     */
+    public Set<String> getMemberReferences() {
+      return memberReferences;
+    }
+
+    /**
+     * Names of the called functions; calls qualified by another class or
+     * namespace keep their qualifier
+     */
+    public Set<String> getCalls() {
+      return calls;
+    }
+  }
+
+  private final ClassMetric[] metrics;
+  private CxxGrammar grammar;
+  private SourceCode sourceFile;
+  private final Map<String, ClassMembers> classes = new LinkedHashMap<String, ClassMembers>();
+  private final Set<String> namespaces = new HashSet<String>();
+  private int anonymousClasses;
+  private final LinkedList<ClassMembers> classStack = new LinkedList<ClassMembers>();
+  // the innermost function definition is first, null stands for a free function
+  private final LinkedList<MemberFunction> functionStack = new LinkedList<MemberFunction>();
+
+  public CxxClassMetricVisitor(ClassMetric... metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void init() {
+    grammar = getContext().getGrammar();
+    subscribeTo(grammar.classSpecifier, grammar.functionDefinition, grammar.idExpression, grammar.simpleTypeSpecifier);
+  }
+
+  @Override
+  public void visitFile(AstNode astNode) {
+    sourceFile = getContext().peekSourceCode();
+    classes.clear();
+    classStack.clear();
+    functionStack.clear();
+    anonymousClasses = 0;
+    namespaces.clear();
+    if (astNode != null) {
+      collectNamespaces(astNode);
+    }
+  }
+
+  /**
+   * Collects the names of the namespaces the file defines, aliases or uses
+   */
+  private void collectNamespaces(AstNode file) {
+    for (AstNode definition : file.findChildren(grammar.originalNamespaceDefinition, grammar.namespaceAliasDefinition)) {
+      namespaces.add(definition.findFirstDirectChild(GenericTokenType.IDENTIFIER).getTokenValue());
+    }
+    for (AstNode name : file.findChildren(grammar.originalNamespaceName)) {
+      namespaces.add(name.getTokenValue());
+    }
+    for (AstNode directive : file.findChildren(grammar.usingDirective)) {
+      namespaces.add(directive.findFirstDirectChild(grammar.namespaceName).getLastToken().getValue());
+    }
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    if (astNode.is(grammar.classSpecifier)) {
+      visitClass(astNode);
+    } else if (astNode.is(grammar.functionDefinition)) {
+      visitFunction(astNode);
+    } else if (!functionStack.isEmpty() && functionStack.getFirst() != null) {
+      if (astNode.is(grammar.idExpression)) {
+        visitIdExpression(functionStack.getFirst(), astNode);
+      } else {
+        visitSimpleTypeSpecifier(functionStack.getFirst(), astNode);
+      }
+    }
+  }
+
+  @Override
+  public void leaveNode(AstNode astNode) {
+    if (astNode.is(grammar.classSpecifier)) {
+      classStack.removeFirst();
+    } else if (astNode.is(grammar.functionDefinition)) {
+      functionStack.removeFirst();
+    }
+  }
+
+  @Override
+  public void leaveFile(AstNode astNode) {
+    for (ClassMetric metric : metrics) {
+      metric.measure(sourceFile, classes.values());
+    }
+    classes.clear();
+  }
+
+  private void visitClass(AstNode classSpecifier) {
+    AstNode classNameAst = className(classSpecifier);
+    ClassMembers members;
+    if (classNameAst == null) {
+      members = classFor("{anonymous#" + (++anonymousClasses) + "}", "");
+    } else {
+      String name = classNameAst.getChild(0).getTokenValue();
+      members = classFor(classStack.isEmpty() ? name : classStack.getFirst().key + "::" + name, name);
+    }
+    members.declared = true;
+    // the class builder visitor has been registered before this one
+    SourceCode sourceCode = getContext().peekSourceCode();
+    if (sourceCode instanceof SourceClass) {
+      members.sourceClass = (SourceClass) sourceCode;
+    }
+
+    AstNode memberSpecification = classSpecifier.findFirstDirectChild(grammar.memberSpecification);
+    if (memberSpecification != null) {
+      for (AstNode memberDeclaration : memberSpecification.findDirectChildren(grammar.memberDeclaration)) {
+        addMembers(members, memberDeclaration);
+      }
+    }
+    classStack.addFirst(members);
+  }
+
+  /**
+   * The name of the class head, searching the whole class specifier would find
+   * names in the base clause or in the body of an anonymous class
+   */
+  private AstNode className(AstNode classSpecifier) {
+    AstNode classHeadName = classSpecifier.findFirstDirectChild(grammar.classHead)
+        .findFirstDirectChild(grammar.classHeadName);
+    return classHeadName == null ? null : classHeadName.findFirstDirectChild(grammar.className);
+  }
+
+  /**
+   * Adds the fields and member functions declared by a member declaration;
+   * inline definitions are added when they are visited
+   */
+  private void addMembers(ClassMembers members, AstNode memberDeclaration) {
+    AstNode declaratorList = memberDeclaration.findFirstDirectChild(grammar.memberDeclaratorList);
+    if (declaratorList == null || memberDeclaration.hasChildren(CxxKeyword.TYPEDEF)) {
+      return;
+    }
+    for (AstNode memberDeclarator : declaratorList.findDirectChildren(grammar.memberDeclarator)) {
+      AstNode declaratorId = memberDeclarator.findFirstChild(grammar.declaratorId);
+      if (declaratorId != null) {
+        AstNode next = declaratorId.nextSibling();
+        if (next != null && next.is(grammar.parametersAndQualifiers)) {
+          members.functions.add(unqualifiedName(declaratorId));
+        } else {
+          members.fields.add(unqualifiedName(declaratorId));
+        }
+      }
+    }
+  }
+
+  private void visitFunction(AstNode functionDefinition) {
+    AstNode declaratorId = functionDefinition.findFirstChild(grammar.declaratorId);
+    ClassMembers owner = null;
+    if (declaratorId != null) {
+      AstNode qualifier = declaratorId.findFirstChild(grammar.nestedNameSpecifier);
+      if (qualifier != null) {
+        owner = ownerOf(qualifierNames(qualifier));
+      } else if (!classStack.isEmpty()) {
+        owner = classStack.getFirst();
+      }
+    }
+
+    MemberFunction function = null;
+    if (owner != null) {
+      String name = unqualifiedName(declaratorId);
+      owner.functions.add(name);
+      function = owner.definitions.get(name);
+      if (function == null) {
+        function = new MemberFunction(owner, name);
+        owner.definitions.put(name, function);
+      }
+    }
+    functionStack.addFirst(function);
+  }
+
+  private void visitIdExpression(MemberFunction function, AstNode idExpression) {
+    if (!idExpression.getParent().is(grammar.declaratorId)) {
+      addReference(function, idExpression);
+    }
+  }
+
+  /**
+   * A call of a function by its plain name, e.g. 'f()' or 'A::f(x)', is parsed
+   * like an explicit type conversion
+   */
+  private void visitSimpleTypeSpecifier(MemberFunction function, AstNode simpleTypeSpecifier) {
+    AstNode next = simpleTypeSpecifier.nextSibling();
+    if (simpleTypeSpecifier.getParent().is(grammar.postfixExpression)
+      && simpleTypeSpecifier.previousSibling() == null
+      && next != null && next.is(CxxPunctuator.BR_LEFT)
+      && simpleTypeSpecifier.getLastToken().getType() == GenericTokenType.IDENTIFIER) {
+      addReference(function, simpleTypeSpecifier);
+    }
+  }
+
+  private void addReference(MemberFunction function, AstNode node) {
+    String name = unqualifiedName(node);
+    AstNode qualifierAst = node.findFirstChild(grammar.nestedNameSpecifier);
+    String qualifier = qualifierAst == null ? null : lastName(qualifierAst);
+
+    boolean own;
+    AstNode previous = node.previousSibling();
+    if (previous != null && previous.is(CxxPunctuator.DOT, CxxPunctuator.ARROW)) {
+      AstNode object = previous.previousSibling();
+      own = object != null && object.is(CxxKeyword.THIS) && object.previousSibling() == null;
+    } else {
+      own = qualifier == null || qualifier.equals(function.owner.name);
+    }
+    if (own) {
+      function.memberReferences.add(name);
+    }
+
+    AstNode next = node.nextSibling();
+    if (next != null && next.is(CxxPunctuator.BR_LEFT)) {
+      function.calls.add(own || qualifier == null ? name : qualifier + "::" + name);
+    }
+  }
+
+  /**
+   * The class a definition qualified by the given names belongs to, or null
+   * for a function of a namespace
+   */
+  private ClassMembers ownerOf(List<String> qualifier) {
+    for (int from = 0; from < qualifier.size(); from++) {
+      ClassMembers declared = classes.get(join(qualifier, from));
+      if (declared != null && declared.declared) {
+        return declared;
+      }
+    }
+    int from = 0;
+    while (from < qualifier.size() && namespaces.contains(qualifier.get(from))) {
+      from++;
+    }
+    if (from == qualifier.size()) {
+      return null;
+    }
+    return classFor(join(qualifier, from), qualifier.get(qualifier.size() - 1));
+  }
+
+  private static String join(List<String> names, int from) {
+    StringBuilder sb = new StringBuilder(names.get(from));
+    for (int i = from + 1; i < names.size(); i++) {
+      sb.append("::").append(names.get(i));
+    }
+    return sb.toString();
+  }
+
+  private ClassMembers classFor(String key, String name) {
+    ClassMembers members = classes.get(key);
+    if (members == null) {
+      members = new ClassMembers(key, name);
+      classes.put(key, members);
+    }
+    return members;
+  }
+
+  /**
+   * The tokens of a name without the nested name specifier
+   */
+  private String unqualifiedName(AstNode node) {
+    List<Token> tokens = node.getTokens();
+    AstNode qualifier = node.findFirstChild(grammar.nestedNameSpecifier);
+    int from = qualifier == null ? 0 : qualifier.getTokens().size();
+    StringBuilder sb = new StringBuilder();
+    for (int i = from; i < tokens.size(); i++) {
+      sb.append(tokens.get(i).getValue());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * The last name of a nested name specifier outside of template arguments,
+   * e.g. 'B' for 'A::B<int>::'
+   */
+  private static String lastName(AstNode nestedNameSpecifier) {
+    List<String> names = qualifierNames(nestedNameSpecifier);
+    return names.isEmpty() ? "" : names.get(names.size() - 1);
+  }
+
+  /**
+   * The names of a nested name specifier outside of template arguments,
+   * e.g. 'A', 'B' for 'A::B<int>::'
+   */
+  private static List<String> qualifierNames(AstNode nestedNameSpecifier) {
+    List<String> names = new ArrayList<String>();
+    int depth = 0;
+    for (Token token : nestedNameSpecifier.getTokens()) {
+      if ("<".equals(token.getValue())) {
+        depth++;
+      } else if (">".equals(token.getValue())) {
+        depth--;
+      } else if (depth == 0 && token.getType() == GenericTokenType.IDENTIFIER) {
+        names.add(token.getValue());
+      }
+    }
+    return names;
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import org.sonar.cxx.CxxClassMetricVisitor.ClassMembers;
+import org.sonar.cxx.CxxClassMetricVisitor.MemberFunction;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.squid.api.SourceCode;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes the lack of cohesion of methods (LCOM4) of the classes declared in
+ * a file: the number of connected components of the graph of fields
+ * and member function definitions, where a function is connected to the fields
+ * and functions it refers to. Constructors and destructors are left out; a class
+ * without function definitions gets 0. The LCOM4 of a file is the highest one
+ * of its classes.
+ */
+public class CxxCohesionMetric implements CxxClassMetricVisitor.ClassMetric {
+
+  public void measure(SourceCode file, Collection<ClassMembers> classes) {
+    int max = 0;
+    for (ClassMembers members : classes) {
+      if (members.isDeclared()) {
+        int lcom4 = lcom4(members);
+        if (members.getSourceClass() != null) {
+          members.getSourceClass().setMeasure(CxxMetric.LCOM4, lcom4);
+        }
+        max = Math.max(max, lcom4);
+      }
+    }
+    file.setMeasure(CxxMetric.LCOM4, max);
+  }
+
+  static int lcom4(ClassMembers members) {
+    Map<String, Integer> nodes = new HashMap<String, Integer>();
+    for (String field : members.getFields()) {
+      nodes.put(field, nodes.size());
+    }
+    int fields = nodes.size();
+    for (MemberFunction function : members.getDefinitions()) {
+      if (!members.isConstructorOrDestructor(function.getName()) && !nodes.containsKey(function.getName())) {
+        nodes.put(function.getName(), nodes.size());
+      }
+    }
+    if (nodes.size() == fields) {
+      return 0;
+    }
+
+    UnionFind components = new UnionFind(nodes.size());
+    for (MemberFunction function : members.getDefinitions()) {
+      Integer node = nodes.get(function.getName());
+      if (node != null && node >= fields) {
+        for (String reference : function.getMemberReferences()) {
+          Integer other = nodes.get(reference);
+          if (other != null) {
+            components.union(node, other);
+          }
+        }
+      }
+    }
+    return components.count();
+  }
+
+  /**
+   * Disjoint sets of the nodes 0..n-1 with path halving and union by size
+   */
+  private static final class UnionFind {
+    private final int[] parent;
+    private final int[] size;
+    private int count;
+
+    UnionFind(int n) {
+      parent = new int[n];
+      size = new int[n];
+      for (int i = 0; i < n; i++) {
+        parent[i] = i;
+        size[i] = 1;
+      }
+      count = n;
+    }
+
+    int find(int i) {
+      int root = i;
+      while (parent[root] != root) {
+        parent[root] = parent[parent[root]];
+        root = parent[root];
+      }
+      return root;
+    }
+
+    void union(int a, int b) {
+      int rootA = find(a);
+      int rootB = find(b);
+      if (rootA != rootB) {
+        if (size[rootA] < size[rootB]) {
+          int tmp = rootA;
+          rootA = rootB;
+          rootB = tmp;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+        count--;
+      }
+    }
+
+    int count() {
+      return count;
+    }
+  }
+
+}
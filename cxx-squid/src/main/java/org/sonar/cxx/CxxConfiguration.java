@@ -32,6 +32,8 @@ public class CxxConfiguration extends SquidConfiguration {
   private List<String> defines = new ArrayList<String>();
   private List<String> includeDirectories = new ArrayList<String>();
   private String baseDir;
+  private CxxScanStatistics statistics;
+  private CxxTokenStore tokenStore;
 
   public CxxConfiguration() {
   }
@@ -83,4 +85,26 @@ public class CxxConfiguration extends SquidConfiguration {
   public String getBaseDir() {
     return baseDir;
   }
+
+  /**
+   * Enables the collection of scan timings into the given statistics; pass null to disable it
+   */
+  public void setStatistics(CxxScanStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  public CxxScanStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Enables recording the tokens of the scanned files into the given store; pass null to disable it
+   */
+  public void setTokenStore(CxxTokenStore tokenStore) {
+    this.tokenStore = tokenStore;
+  }
+
+  public CxxTokenStore getTokenStore() {
+    return tokenStore;
+  }
 }
@@ -0,0 +1,53 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import org.sonar.cxx.CxxClassMetricVisitor.ClassMembers;
+import org.sonar.cxx.CxxClassMetricVisitor.MemberFunction;
+import org.sonar.cxx.api.CxxMetric;
+import org.sonar.squid.api.SourceCode;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Computes the response for class (RFC), the number of distinct member
+ * functions of a class and functions called by them. The RFC of a file is the
+ * sum of the RFCs of its classes.
+ */
+public class CxxRfcMetric implements CxxClassMetricVisitor.ClassMetric {
+
+  public void measure(SourceCode file, Collection<ClassMembers> classes) {
+    int total = 0;
+    for (ClassMembers members : classes) {
+      Set<String> responseSet = new HashSet<String>(members.getFunctions());
+      for (MemberFunction function : members.getDefinitions()) {
+        responseSet.addAll(function.getCalls());
+      }
+      if (members.getSourceClass() != null) {
+        members.getSourceClass().setMeasure(CxxMetric.RFC, responseSet.size());
+      }
+      total += responseSet.size();
+    }
+    file.setMeasure(CxxMetric.RFC, total);
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects cumulative timings of a squid scan: per phase (lexing, preprocessing,
+ * parsing, visiting), per visitor and per file. Collecting is enabled by setting
+ * an instance into the {@link CxxConfiguration}.
+ */
+public class CxxScanStatistics {
+  public static final String LEXING = "lexing";
+  public static final String PREPROCESSING = "preprocessing";
+  public static final String PARSING = "parsing";
+  public static final String VISITING = "visiting";
+
+  /**
+   * Cumulative time and number of invocations of a measured item
+   */
+  public static final class Entry {
+    private final String name;
+    private long nanos;
+    private long count;
+
+    Entry(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    public long getCount() {
+      return count;
+    }
+  }
+
+  private static final Comparator<Entry> BY_TIME_DESC = new Comparator<Entry>() {
+    public int compare(Entry e1, Entry e2) {
+      if (e1.nanos == e2.nanos) {
+        return e1.name.compareTo(e2.name);
+      }
+      return e1.nanos > e2.nanos ? -1 : 1;
+    }
+  };
+
+  private final Map<String, Entry> phases = new HashMap<String, Entry>();
+  private final Map<String, Entry> visitors = new HashMap<String, Entry>();
+  private final Map<String, Entry> files = new HashMap<String, Entry>();
+  private long fileStart;
+
+  /**
+   * Marks the beginning of the analysis of the next file
+   */
+  public void beginFile() {
+    fileStart = System.nanoTime();
+  }
+
+  /**
+   * Accounts the time elapsed since the last call of {@link #beginFile()} to the given file
+   */
+  public void endFile(String file) {
+    addFile(file, System.nanoTime() - fileStart);
+  }
+
+  public void addPhase(String phase, long nanos) {
+    add(phases, phase, nanos);
+  }
+
+  public void addVisitor(String visitor, long nanos) {
+    add(visitors, visitor, nanos);
+  }
+
+  public void addFile(String file, long nanos) {
+    add(files, file, nanos);
+  }
+
+  /**
+   * Returns the phase entries, the most expensive first
+   */
+  public List<Entry> getPhases() {
+    return sorted(phases);
+  }
+
+  /**
+   * Returns the visitor entries, the most expensive first
+   */
+  public List<Entry> getVisitors() {
+    return sorted(visitors);
+  }
+
+  /**
+   * Returns the file entries, the most expensive first
+   */
+  public List<Entry> getFiles() {
+    return sorted(files);
+  }
+
+  /**
+   * Renders the phases and the most expensive visitors and files as a plain text table
+   * @param limit Maximal number of visitors and files to list
+   */
+  public String toTable(int limit) {
+    StringBuilder sb = new StringBuilder();
+    appendTable(sb, "Phase", getPhases(), Integer.MAX_VALUE);
+    appendTable(sb, "Visitor", getVisitors(), limit);
+    appendTable(sb, "File", getFiles(), limit);
+    return sb.toString();
+  }
+
+  /**
+   * Renders all collected entries as a JSON document
+   */
+  public String toJson() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\n");
+    appendJson(sb, "phases", getPhases());
+    sb.append(",\n");
+    appendJson(sb, "visitors", getVisitors());
+    sb.append(",\n");
+    appendJson(sb, "files", getFiles());
+    sb.append("\n}\n");
+    return sb.toString();
+  }
+
+  private static void add(Map<String, Entry> entries, String name, long nanos) {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      entry = new Entry(name);
+      entries.put(name, entry);
+    }
+    entry.nanos += nanos;
+    entry.count++;
+  }
+
+  private static List<Entry> sorted(Map<String, Entry> entries) {
+    List<Entry> result = new ArrayList<Entry>(entries.values());
+    Collections.sort(result, BY_TIME_DESC);
+    return result;
+  }
+
+  private static void appendTable(StringBuilder sb, String title, List<Entry> entries, int limit) {
+    sb.append(String.format("%12s %12s  %s%n", "time (ms)", "count", title));
+    int n = 0;
+    for (Entry entry : entries) {
+      if (n++ == limit) {
+        break;
+      }
+      sb.append(String.format("%12d %12d  %s%n", entry.nanos / 1000000, entry.count, entry.name));
+    }
+  }
+
+  private static void appendJson(StringBuilder sb, String title, List<Entry> entries) {
+    sb.append("  \"").append(title).append("\": [");
+    boolean first = true;
+    for (Entry entry : entries) {
+      sb.append(first ? "\n" : ",\n");
+      sb.append("    {\"name\": \"");
+      appendEscaped(sb, entry.name);
+      sb.append("\", \"nanos\": ").append(entry.nanos)
+          .append(", \"count\": ").append(entry.count).append("}");
+      first = false;
+    }
+    sb.append(first ? "]" : "\n  ]");
+  }
+
+  private static void appendEscaped(StringBuilder sb, String str) {
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import com.sonar.sslr.api.AstAndTokenVisitor;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.AstNodeType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.squid.SquidAstVisitor;
+import org.sonar.cxx.api.CxxGrammar;
+
+/**
+ * Visitor which forwards all callbacks to a delegate and accounts the time
+ * spent in it to {@link CxxScanStatistics}.
+ */
+class CxxTimedVisitor extends SquidAstVisitor<CxxGrammar> {
+
+  private final SquidAstVisitor<CxxGrammar> delegate;
+  private final String name;
+  private final CxxScanStatistics statistics;
+
+  static CxxTimedVisitor wrap(SquidAstVisitor<CxxGrammar> delegate, String name, CxxScanStatistics statistics) {
+    return delegate instanceof AstAndTokenVisitor
+        ? new TokenVisitor(delegate, name, statistics)
+        : new CxxTimedVisitor(delegate, name, statistics);
+  }
+
+  CxxTimedVisitor(SquidAstVisitor<CxxGrammar> delegate, String name, CxxScanStatistics statistics) {
+    this.delegate = delegate;
+    this.name = name;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public void init() {
+    delegate.setContext(getContext());
+    long start = System.nanoTime();
+    delegate.init();
+    statistics.addVisitor(name, System.nanoTime() - start);
+
+    // the delegate may subscribe in its constructor or in init()
+    for (AstNodeType type : delegate.getAstNodeTypesToVisit()) {
+      if (!getAstNodeTypesToVisit().contains(type)) {
+        subscribeTo(type);
+      }
+    }
+  }
+
+  @Override
+  public void visitFile(AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.visitFile(astNode);
+    statistics.addVisitor(name, System.nanoTime() - start);
+  }
+
+  @Override
+  public void visitNode(AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.visitNode(astNode);
+    statistics.addVisitor(name, System.nanoTime() - start);
+  }
+
+  @Override
+  public void leaveNode(AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.leaveNode(astNode);
+    statistics.addVisitor(name, System.nanoTime() - start);
+  }
+
+  @Override
+  public void leaveFile(AstNode astNode) {
+    long start = System.nanoTime();
+    delegate.leaveFile(astNode);
+    statistics.addVisitor(name, System.nanoTime() - start);
+  }
+
+  @Override
+  public void destroy() {
+    delegate.destroy();
+  }
+
+  void forwardToken(Token token) {
+    long start = System.nanoTime();
+    ((AstAndTokenVisitor) delegate).visitToken(token);
+    statistics.addVisitor(name, System.nanoTime() - start);
+  }
+
+  private static class TokenVisitor extends CxxTimedVisitor implements AstAndTokenVisitor {
+    TokenVisitor(SquidAstVisitor<CxxGrammar> delegate, String name, CxxScanStatistics statistics) {
+      super(delegate, name, statistics);
+    }
+
+    public void visitToken(Token token) {
+      forwardToken(token);
+    }
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import com.sonar.sslr.api.Preprocessor;
+import com.sonar.sslr.api.PreprocessorAction;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the tokens of the scanned files as the lexer's channels produce them,
+ * i.e. before preprocessing, so that the copy-paste detection does not have to
+ * lex the files again. The token images are coded as ints, one code per type
+ * and image; every file keeps an array of image codes and one of lines. Recording is enabled by setting an
+ * instance into the {@link CxxConfiguration}.
+ */
+public class CxxTokenStore {
+  private static final int INITIAL_SIZE = 1024;
+
+  private final Map<TokenType, Map<String, Integer>> codes = new HashMap<TokenType, Map<String, Integer>>();
+  private final List<String> images = new ArrayList<String>();
+  private final List<TokenType> types = new ArrayList<TokenType>();
+  private final Map<String, FileTokens> files = new HashMap<String, FileTokens>();
+  private boolean closed;
+
+  /**
+   * The recorded tokens of a file
+   */
+  public final class FileTokens {
+    private final int[] imageCodes;
+    private final int[] lines;
+
+    FileTokens(int[] imageCodes, int[] lines) {
+      this.imageCodes = imageCodes;
+      this.lines = lines;
+    }
+
+    public int size() {
+      return imageCodes.length;
+    }
+
+    public String getImage(int i) {
+      return image(imageCodes[i]);
+    }
+
+    public TokenType getType(int i) {
+      return type(imageCodes[i]);
+    }
+
+    public int getLine(int i) {
+      return lines[i];
+    }
+  }
+
+  /**
+   * Returns and forgets the tokens recorded for the file with the given
+   * absolute path, or null if there are none
+   */
+  public synchronized FileTokens take(String path) {
+    return files.remove(path);
+  }
+
+  public synchronized boolean contains(String path) {
+    return files.containsKey(path);
+  }
+
+  public synchronized boolean isEmpty() {
+    return files.isEmpty();
+  }
+
+  /**
+   * Forgets all tokens and stops recording, e.g. because nobody is
+   * going to take them
+   */
+  public synchronized void close() {
+    closed = true;
+    files.clear();
+  }
+
+  /**
+   * Creates a preprocessor recording the tokens it sees. It has to come first
+   * in the lexer, so that it sees the tokens before any other preprocessor.
+   */
+  public Recorder newRecorder() {
+    return new Recorder();
+  }
+
+  private synchronized int code(Token token) {
+    Map<String, Integer> codesOfType = codes.get(token.getType());
+    if (codesOfType == null) {
+      codesOfType = new HashMap<String, Integer>();
+      codes.put(token.getType(), codesOfType);
+    }
+    Integer code = codesOfType.get(token.getValue());
+    if (code == null) {
+      code = images.size();
+      codesOfType.put(token.getValue(), code);
+      images.add(token.getValue());
+      types.add(token.getType());
+    }
+    return code;
+  }
+
+  private synchronized String image(int code) {
+    return images.get(code);
+  }
+
+  private synchronized TokenType type(int code) {
+    return types.get(code);
+  }
+
+  private synchronized void put(String path, int[] imageCodes, int[] lines) {
+    if (!closed) {
+      files.put(path, new FileTokens(imageCodes, lines));
+    }
+  }
+
+  /**
+   * Records the tokens of the files lexed between {@link #beginFile} and {@link #endFile}
+   */
+  public final class Recorder extends Preprocessor {
+    private String path;
+    private int[] imageCodes = new int[INITIAL_SIZE];
+    private int[] lines = new int[INITIAL_SIZE];
+    private int size;
+
+    public void beginFile(File file) {
+      path = file == null ? null : file.getAbsolutePath();
+      size = 0;
+    }
+
+    @Override
+    public void init() {
+      size = 0;
+    }
+
+    @Override
+    public PreprocessorAction process(List<Token> tokens) {
+      if (path != null) {
+        if (size == imageCodes.length) {
+          imageCodes = grow(imageCodes);
+          lines = grow(lines);
+        }
+        Token token = tokens.get(0);
+        imageCodes[size] = code(token);
+        lines[size] = token.getLine();
+        size++;
+      }
+      return PreprocessorAction.NO_OPERATION;
+    }
+
+    public void endFile() {
+      if (path != null) {
+        int[] fileCodes = new int[size];
+        int[] fileLines = new int[size];
+        System.arraycopy(imageCodes, 0, fileCodes, 0, size);
+        System.arraycopy(lines, 0, fileLines, 0, size);
+        put(path, fileCodes, fileLines);
+        path = null;
+      }
+    }
+
+    private int[] grow(int[] array) {
+      int[] grown = new int[array.length * 2];
+      System.arraycopy(array, 0, grown, 0, array.length);
+      return grown;
+    }
+  }
+}
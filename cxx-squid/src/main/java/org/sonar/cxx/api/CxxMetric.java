@@ -31,7 +31,20 @@ public enum CxxMetric implements MetricDef {
   CLASSES,
   COMPLEXITY,
   COMMENT_LINES,
-  COMMENT_BLANK_LINES;
+  COMMENT_BLANK_LINES,
+  // set on files and classes by their visitors, not summed up
+  RFC(false),
+  LCOM4(false);
+
+  private final boolean aggregated;
+
+  CxxMetric() {
+    this(true);
+  }
+
+  CxxMetric(boolean aggregated) {
+    this.aggregated = aggregated;
+  }
 
   public String getName() {
     return name();
@@ -42,11 +55,11 @@ public enum CxxMetric implements MetricDef {
   }
 
   public boolean aggregateIfThereIsAlreadyAValue() {
-    return true;
+    return aggregated;
   }
 
   public boolean isThereAggregationFormula() {
-    return true;
+    return aggregated;
   }
 
   public CalculatedMetricFormula getCalculatedMetricFormula() {
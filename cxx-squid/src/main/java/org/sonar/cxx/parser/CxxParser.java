@@ -19,12 +19,15 @@
  */
 package org.sonar.cxx.parser;
 
+import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.Parser;
 import com.sonar.sslr.impl.events.ExtendedStackTrace;
 import com.sonar.sslr.impl.events.ParsingEventListener;
 import com.sonar.sslr.squid.SquidAstVisitorContext;
 import com.sonar.sslr.squid.SquidAstVisitorContextImpl;
 import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxScanStatistics;
+import org.sonar.cxx.CxxTokenStore;
 import org.sonar.cxx.api.CxxGrammar;
 import org.sonar.cxx.lexer.CxxLexer;
 import org.sonar.cxx.preprocessor.CxxPreprocessor;
@@ -35,18 +38,51 @@ public final class CxxParser {
   private static class CxxParseEventPropagator extends ParsingEventListener {
     private CxxPreprocessor cxxpp;
     private SquidAstVisitorContext<CxxGrammar> astVisitorContext;
+    private CxxScanStatistics statistics;
+    private CxxTokenStore.Recorder recorder;
+    private long lexStart;
+    private long parseStart;
 
-    CxxParseEventPropagator(CxxPreprocessor cxxpp, SquidAstVisitorContext<CxxGrammar> astVisitorContext) {
+    CxxParseEventPropagator(CxxPreprocessor cxxpp, SquidAstVisitorContext<CxxGrammar> astVisitorContext,
+        CxxScanStatistics statistics, CxxTokenStore.Recorder recorder) {
       this.cxxpp = cxxpp;
       this.astVisitorContext = astVisitorContext;
+      this.statistics = statistics;
+      this.recorder = recorder;
     }
 
     public void beginLex() {
+      if (statistics != null) {
+        statistics.beginFile();
+        lexStart = System.nanoTime();
+      }
       this.cxxpp.beginPreprocessing(astVisitorContext.getFile());
+      if (recorder != null) {
+        recorder.beginFile(astVisitorContext.getFile());
+      }
     }
-  }
 
-  private static CxxParseEventPropagator parseEventPropagator;
+    public void endLex() {
+      if (statistics != null) {
+        statistics.addPhase(CxxScanStatistics.LEXING, System.nanoTime() - lexStart);
+      }
+      if (recorder != null) {
+        recorder.endFile();
+      }
+    }
+
+    public void beginParse() {
+      if (statistics != null) {
+        parseStart = System.nanoTime();
+      }
+    }
+
+    public void endParse() {
+      if (statistics != null) {
+        statistics.addPhase(CxxScanStatistics.PARSING, System.nanoTime() - parseStart);
+      }
+    }
+  }
 
   private CxxParser() {
   }
@@ -62,20 +98,27 @@ public final class CxxParser {
 
   public static Parser<CxxGrammar> create(SquidAstVisitorContext<CxxGrammar> context, CxxConfiguration conf) {
     CxxPreprocessor cxxpp = new CxxPreprocessor(context, conf);
-    parseEventPropagator = new CxxParseEventPropagator(cxxpp, context);
+    CxxTokenStore.Recorder recorder = null;
+    Lexer lexer;
+    if (conf.getTokenStore() != null) {
+      // the recorder has to see the tokens before the preprocessors change them
+      recorder = conf.getTokenStore().newRecorder();
+      lexer = CxxLexer.create(conf, recorder, cxxpp, new JoinStringsPreprocessor());
+    } else {
+      lexer = CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor());
+    }
     return Parser.builder((CxxGrammar) new CxxGrammarImpl())
-        .withLexer(CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor()))
-        .setParsingEventListeners(parseEventPropagator).build();
+        .withLexer(lexer)
+        .setParsingEventListeners(new CxxParseEventPropagator(cxxpp, context, conf.getStatistics(), recorder)).build();
   }
 
   public static Parser<CxxGrammar> createDebugParser(SquidAstVisitorContext<CxxGrammar> context,
       ExtendedStackTrace stackTrace) {
     CxxConfiguration conf = new CxxConfiguration();
     CxxPreprocessor cxxpp = new CxxPreprocessor(context, conf);
-    parseEventPropagator = new CxxParseEventPropagator(cxxpp, context);
     return Parser.builder((CxxGrammar) new CxxGrammarImpl())
         .withLexer(CxxLexer.create(conf, cxxpp, new JoinStringsPreprocessor()))
-        .setParsingEventListeners(parseEventPropagator)
+        .setParsingEventListeners(new CxxParseEventPropagator(cxxpp, context, conf.getStatistics(), null))
         .setExtendedStackTrace(stackTrace)
         .build();
   }
@@ -32,6 +32,7 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxScanStatistics;
 import org.sonar.cxx.api.CxxGrammar;
 import org.sonar.cxx.lexer.CxxLexer;
 
@@ -110,6 +111,8 @@ public class CxxPreprocessor extends Preprocessor {
   private SourceCodeProvider codeProvider = new SourceCodeProvider();
   private SquidAstVisitorContext<CxxGrammar> context;
   private ExpressionEvaluator ifExprEvaluator;
+  private CxxScanStatistics statistics;
+  private int processDepth = 0;
 
   // state which is not shared between files
   private State state = new State(null);
@@ -128,6 +131,7 @@ public class CxxPreprocessor extends Preprocessor {
       SourceCodeProvider sourceCodeProvider) {
     this.context = context;
     this.ifExprEvaluator = new ExpressionEvaluator(conf, this);
+    this.statistics = conf.getStatistics();
 
     codeProvider = sourceCodeProvider;
     codeProvider.setIncludeRoots(conf.getIncludeDirectories(), conf.getBaseDir());
@@ -167,6 +171,25 @@ public class CxxPreprocessor extends Preprocessor {
 
   @Override
   public PreprocessorAction process(List<Token> tokens) {
+    if (statistics == null) {
+      return doProcess(tokens);
+    }
+
+    // process() is reentered when included files and macro bodies are lexed,
+    // only the outermost invocation is accounted to avoid counting twice
+    long start = processDepth == 0 ? System.nanoTime() : 0;
+    processDepth++;
+    try {
+      return doProcess(tokens);
+    } finally {
+      processDepth--;
+      if (processDepth == 0) {
+        statistics.addPhase(CxxScanStatistics.PREPROCESSING, System.nanoTime() - start);
+      }
+    }
+  }
+
+  private PreprocessorAction doProcess(List<Token> tokens) {
     Token token = tokens.get(0);
     TokenType ttype = token.getType();
     File file = getFileUnderAnalysis();
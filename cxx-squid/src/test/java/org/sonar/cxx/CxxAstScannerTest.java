@@ -24,11 +24,15 @@ import com.sonar.sslr.squid.AstScanner;
 import org.junit.Test;
 import org.sonar.cxx.api.CxxGrammar;
 import org.sonar.cxx.api.CxxMetric;
+import org.sonar.squid.api.SourceClass;
 import org.sonar.squid.api.SourceFile;
+import org.sonar.squid.api.SourceFunction;
 import org.sonar.squid.api.SourceProject;
 import org.sonar.squid.indexer.QueryByType;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -75,6 +79,22 @@ public class CxxAstScannerTest {
     assertThat(file.getInt(CxxMetric.FUNCTIONS)).isEqualTo(2);
   }
 
+  @Test
+  public void function_keys() {
+    AstScanner<CxxGrammar> scanner = CxxAstScanner.create(new CxxConfiguration());
+    scanner.scanFile(new File("src/test/resources/metrics/functions.cc"));
+    assertThat(scanner.getIndex().search("foo:3")).isInstanceOf(SourceFunction.class);
+    assertThat(scanner.getIndex().search("main:5")).isInstanceOf(SourceFunction.class);
+  }
+
+  @Test
+  public void class_keys() {
+    AstScanner<CxxGrammar> scanner = CxxAstScanner.create(new CxxConfiguration());
+    scanner.scanFile(new File("src/test/resources/metrics/classes.cc"));
+    assertThat(scanner.getIndex().search("A:1")).isInstanceOf(SourceClass.class);
+    assertThat(scanner.getIndex().search(":2")).isInstanceOf(SourceClass.class);
+  }
+
   @Test
   public void classes() {
     SourceFile file = CxxAstScanner.scanSingleFile(new File("src/test/resources/metrics/classes.cc"));
@@ -87,4 +107,72 @@ public class CxxAstScannerTest {
     assertThat(file.getInt(CxxMetric.COMPLEXITY)).isEqualTo(14);
   }
 
+  @Test
+  public void rfc() {
+    AstScanner<CxxGrammar> scanner = CxxAstScanner.create(new CxxConfiguration());
+    scanner.scanFile(new File("src/test/resources/metrics/rfc.cc"));
+    assertThat(scanner.getIndex().search("Base:1").getInt(CxxMetric.RFC)).isEqualTo(1);
+    assertThat(scanner.getIndex().search("A:6").getInt(CxxMetric.RFC)).isEqualTo(5);
+    SourceFile file = (SourceFile) scanner.getIndex().search(new QueryByType(SourceFile.class)).iterator().next();
+    assertThat(file.getInt(CxxMetric.RFC)).isEqualTo(6);
+  }
+
+  @Test
+  public void rfcOfQualifiedNestedAndAnonymousClasses() {
+    AstScanner<CxxGrammar> scanner = CxxAstScanner.create(new CxxConfiguration());
+    scanner.scanFile(new File("src/test/resources/metrics/rfc_qualified.cc"));
+    assertThat(scanner.getIndex().search("Outer:9").getInt(CxxMetric.RFC)).isEqualTo(2);
+    assertThat(scanner.getIndex().search("Inner:12").getInt(CxxMetric.RFC)).isEqualTo(2);
+    assertThat(scanner.getIndex().search("Inner:19").getInt(CxxMetric.RFC)).isEqualTo(1);
+    assertThat(scanner.getIndex().search(":26").getInt(CxxMetric.RFC)).isEqualTo(1);
+    assertThat(scanner.getIndex().search(":27").getInt(CxxMetric.RFC)).isEqualTo(2);
+    // the namespace function is not a member of a class
+    SourceFile file = (SourceFile) scanner.getIndex().search(new QueryByType(SourceFile.class)).iterator().next();
+    assertThat(file.getInt(CxxMetric.RFC)).isEqualTo(8);
+  }
+
+  @Test
+  public void lcom4() {
+    AstScanner<CxxGrammar> scanner = CxxAstScanner.create(new CxxConfiguration());
+    scanner.scanFile(new File("src/test/resources/metrics/cohesion.cc"));
+    assertThat(scanner.getIndex().search("Split:1").getInt(CxxMetric.LCOM4)).isEqualTo(2);
+    assertThat(scanner.getIndex().search("NoFunctions:25").getInt(CxxMetric.LCOM4)).isEqualTo(0);
+    SourceFile file = (SourceFile) scanner.getIndex().search(new QueryByType(SourceFile.class)).iterator().next();
+    assertThat(file.getInt(CxxMetric.LCOM4)).isEqualTo(2);
+  }
+
+  @Test
+  public void statistics() {
+    CxxConfiguration conf = new CxxConfiguration();
+    CxxScanStatistics statistics = new CxxScanStatistics();
+    conf.setStatistics(statistics);
+    AstScanner<CxxGrammar> scanner = CxxAstScanner.create(conf);
+    scanner.scanFiles(ImmutableList.of(new File("src/test/resources/metrics/trivial.cc"),
+        new File("src/test/resources/metrics/classes.cc")));
+
+    SourceProject project = (SourceProject) scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+    assertThat(project.getInt(CxxMetric.LINES_OF_CODE)).isEqualTo(statisticsFreeLinesOfCode());
+
+    assertThat(names(statistics.getPhases())).containsOnly(CxxScanStatistics.LEXING, CxxScanStatistics.PREPROCESSING,
+        CxxScanStatistics.PARSING, CxxScanStatistics.VISITING);
+    assertThat(names(statistics.getVisitors())).contains("CxxLinesOfCodeVisitor", "LinesVisitor");
+    assertThat(statistics.getFiles()).hasSize(2);
+  }
+
+  private int statisticsFreeLinesOfCode() {
+    AstScanner<CxxGrammar> scanner = CxxAstScanner.create(new CxxConfiguration());
+    scanner.scanFiles(ImmutableList.of(new File("src/test/resources/metrics/trivial.cc"),
+        new File("src/test/resources/metrics/classes.cc")));
+    SourceProject project = (SourceProject) scanner.getIndex().search(new QueryByType(SourceProject.class)).iterator().next();
+    return project.getInt(CxxMetric.LINES_OF_CODE);
+  }
+
+  private static List<String> names(List<CxxScanStatistics.Entry> entries) {
+    List<String> names = new ArrayList<String>();
+    for (CxxScanStatistics.Entry entry : entries) {
+      names.add(entry.getName());
+    }
+    return names;
+  }
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CxxScanStatisticsTest {
+
+  @Test
+  public void entries_are_sorted_by_time() {
+    CxxScanStatistics statistics = new CxxScanStatistics();
+    statistics.addVisitor("fast", 10);
+    statistics.addVisitor("slow", 15);
+    statistics.addVisitor("fast", 10);
+
+    assertThat(statistics.getVisitors()).hasSize(2);
+    assertThat(statistics.getVisitors().get(0).getName()).isEqualTo("fast");
+    assertThat(statistics.getVisitors().get(0).getNanos()).isEqualTo(20);
+    assertThat(statistics.getVisitors().get(0).getCount()).isEqualTo(2);
+    assertThat(statistics.getVisitors().get(1).getName()).isEqualTo("slow");
+  }
+
+  @Test
+  public void table_is_limited() {
+    CxxScanStatistics statistics = new CxxScanStatistics();
+    statistics.addFile("a.cc", 3000000);
+    statistics.addFile("b.cc", 2000000);
+    statistics.addFile("c.cc", 1000000);
+
+    String table = statistics.toTable(2);
+    assertThat(table).contains("a.cc").contains("b.cc").excludes("c.cc");
+  }
+
+  @Test
+  public void json_is_escaped() {
+    CxxScanStatistics statistics = new CxxScanStatistics();
+    statistics.addFile("C:\\src\\\"a\".cc", 42);
+
+    assertThat(statistics.toJson()).contains("{\"name\": \"C:\\\\src\\\\\\\"a\\\".cc\", \"nanos\": 42, \"count\": 1}");
+    assertThat(statistics.toJson()).contains("\"phases\": []");
+  }
+
+}
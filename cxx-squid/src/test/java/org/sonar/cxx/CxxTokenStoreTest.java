@@ -0,0 +1,98 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2011 Waleri Enns and CONTACT Software GmbH
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.cxx;
+
+import com.google.common.collect.ImmutableList;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import org.junit.Test;
+import org.sonar.cxx.api.CxxTokenType;
+import org.sonar.cxx.lexer.CxxLexer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CxxTokenStoreTest {
+  private static final File FUNCTIONS = new File("src/test/resources/metrics/functions.cc");
+  private static final File CLASSES = new File("src/test/resources/metrics/classes.cc");
+
+  @Test
+  public void shouldRecordTheTokensOfTheLexer() {
+    CxxTokenStore store = new CxxTokenStore();
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setTokenStore(store);
+    CxxAstScanner.create(conf).scanFiles(ImmutableList.of(FUNCTIONS, CLASSES));
+
+    for (File file : new File[] {FUNCTIONS, CLASSES}) {
+      List<String> expected = new ArrayList<String>();
+      for (Token token : CxxLexer.create(new CxxConfiguration()).lex(file)) {
+        expected.add(token.getValue() + ":" + token.getLine());
+      }
+
+      assertThat(store.contains(file.getAbsolutePath())).isTrue();
+      CxxTokenStore.FileTokens tokens = store.take(file.getAbsolutePath());
+      List<String> recorded = new ArrayList<String>();
+      for (int i = 0; i < tokens.size(); i++) {
+        recorded.add(tokens.getImage(i) + ":" + tokens.getLine(i));
+      }
+      assertThat(recorded).isEqualTo(expected);
+    }
+    assertThat(store.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void shouldCodeEqualImagesOnce() {
+    CxxTokenStore store = new CxxTokenStore();
+    CxxTokenStore.Recorder recorder = store.newRecorder();
+    recorder.beginFile(FUNCTIONS);
+    recorder.process(tokens(GenericTokenType.IDENTIFIER, "a", 1));
+    recorder.process(tokens(CxxTokenType.NUMBER, "1", 1));
+    recorder.process(tokens(GenericTokenType.IDENTIFIER, "a", 2));
+    recorder.endFile();
+
+    CxxTokenStore.FileTokens tokens = store.take(FUNCTIONS.getAbsolutePath());
+    assertThat(tokens.size()).isEqualTo(3);
+    assertThat(tokens.getImage(2)).isSameAs(tokens.getImage(0));
+    assertThat(tokens.getType(1)).isEqualTo(CxxTokenType.NUMBER);
+    assertThat(tokens.getLine(2)).isEqualTo(2);
+    assertThat(store.take(FUNCTIONS.getAbsolutePath())).isNull();
+  }
+
+  @Test
+  public void shouldNotRecordWhenClosed() {
+    CxxTokenStore store = new CxxTokenStore();
+    store.close();
+    CxxConfiguration conf = new CxxConfiguration();
+    conf.setTokenStore(store);
+    CxxAstScanner.create(conf).scanFiles(ImmutableList.of(FUNCTIONS));
+
+    assertThat(store.isEmpty()).isTrue();
+  }
+
+  private static List<Token> tokens(com.sonar.sslr.api.TokenType type, String value, int line) {
+    List<Token> tokens = new ArrayList<Token>();
+    tokens.add(Token.builder().setType(type).setValueAndOriginalValue(value).setLine(line).setColumn(0)
+        .setURI(FUNCTIONS.toURI()).build());
+    return tokens;
+  }
+}
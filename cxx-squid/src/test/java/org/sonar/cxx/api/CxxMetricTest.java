@@ -27,13 +27,14 @@ public class CxxMetricTest {
 
   @Test
   public void test() {
-    assertThat(CxxMetric.values()).hasSize(9);
+    assertThat(CxxMetric.values()).hasSize(11);
 
     for (CxxMetric metric : CxxMetric.values()) {
       assertThat(metric.getName()).isEqualTo(metric.name());
       assertThat(metric.isCalculatedMetric()).isFalse();
-      assertThat(metric.aggregateIfThereIsAlreadyAValue()).isTrue();
-      assertThat(metric.isThereAggregationFormula()).isTrue();
+      boolean aggregated = metric != CxxMetric.RFC && metric != CxxMetric.LCOM4;
+      assertThat(metric.aggregateIfThereIsAlreadyAValue()).isEqualTo(aggregated);
+      assertThat(metric.isThereAggregationFormula()).isEqualTo(aggregated);
       assertThat(metric.getCalculatedMetricFormula()).isNull();
     }
   }
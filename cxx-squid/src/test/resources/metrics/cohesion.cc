@@ -0,0 +1,27 @@
+class Split {
+public:
+  Split() : a(0), b(0), c(0) {}
+  void setA(int value) { a = value; }
+  int getA() { return this->a; }
+  void reset();
+  int sum();
+private:
+  int a;
+  int b;
+  int c;
+  Split *next;
+};
+
+void Split::reset() {
+  b = 0;
+  next->a = 0;
+}
+
+int Split::sum() {
+  int total = Split::b;
+  return total + getA();
+}
+
+class NoFunctions {
+  int x;
+};
@@ -0,0 +1,18 @@
+class Base {
+public:
+  void inherited();
+};
+
+class A : public Base {
+public:
+  void first() { inherited(); helper(); }
+  void second();
+private:
+  void helper() {}
+  Base base;
+};
+
+void A::second() {
+  base.inherited();
+  printf("%d", 1);
+}
@@ -0,0 +1,27 @@
+namespace ns {
+  void free();
+}
+
+void ns::free() {
+  helper();
+}
+
+class Outer {
+public:
+  void f();
+  class Inner {
+  public:
+    void g() { h(); }
+    void h() {}
+  };
+};
+
+class Inner {
+public:
+  void k();
+};
+
+void Outer::f() { g(); }
+
+struct { void a() {} } x;
+struct { void a() {} void c() {} } y;
@@ -20,24 +20,79 @@
 package org.sonar.plugins.cxx;
 
 import net.sourceforge.pmd.cpd.Tokenizer;
+import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.AbstractCpdMapping;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.InputFile;
 import org.sonar.api.resources.Language;
 import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.cxx.CxxTokenStore;
 
+import java.io.File;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 public class CxxCpdMapping extends AbstractCpdMapping {
+  // the tokens recorded by the squid sensor, per analysis
+  private static final Map<Settings, CxxTokenStore> TOKEN_STORES = new WeakHashMap<Settings, CxxTokenStore>();
 
   private final CxxLanguage language;
+  private final ProjectFileSystem fs;
   private final Charset charset;
+  private final Settings settings;
 
   public CxxCpdMapping(CxxLanguage language, ProjectFileSystem fs) {
+    this(language, fs, new Settings());
+  }
+
+  public CxxCpdMapping(CxxLanguage language, ProjectFileSystem fs, Settings settings) {
     this.language = language;
+    this.fs = fs;
     this.charset = fs.getSourceCharset();
+    this.settings = settings;
   }
 
   public Tokenizer getTokenizer() {
-    return new CxxTokenizer(charset);
+    int threads = Math.max(1, settings.getInt(CxxPlugin.CPD_THREADS_KEY));
+    List<File> files = new ArrayList<File>();
+    if (threads > 1) {
+      // the CPD engine asks for the files in this order
+      for (InputFile inputFile : fs.mainFiles(CxxLanguage.KEY)) {
+        files.add(inputFile.getFile());
+      }
+    }
+    return new CxxTokenizer(charset, settings.getBoolean(CxxPlugin.CPD_IGNORE_LITERALS_KEY),
+        settings.getBoolean(CxxPlugin.CPD_IGNORE_IDENTIFIERS_KEY), files, threads, tokenStore(settings));
+  }
+
+  /**
+   * Returns the store shared by the squid sensor, which fills it, and the
+   * tokenizer of the analysis using the given settings
+   */
+  public static CxxTokenStore tokenStore(Settings settings) {
+    synchronized (TOKEN_STORES) {
+      CxxTokenStore store = TOKEN_STORES.get(settings);
+      if (store == null) {
+        store = new CxxTokenStore();
+        TOKEN_STORES.put(settings, store);
+      }
+      return store;
+    }
+  }
+
+  /**
+   * Whether the copy-paste detection is skipped for C++, following the CPD
+   * sensor: the language specific property wins over the global one
+   */
+  public static boolean isSkipped(Settings settings) {
+    String key = "sonar.cpd." + CxxLanguage.KEY + ".skip";
+    if (settings.hasKey(key)) {
+      return settings.getBoolean(key);
+    }
+    return settings.getBoolean(CoreProperties.CPD_SKIP_PROPERTY);
   }
 
   public Language getLanguage() {
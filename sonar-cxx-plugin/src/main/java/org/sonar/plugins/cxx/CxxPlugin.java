@@ -23,6 +23,8 @@ import org.sonar.api.Extension;
 import org.sonar.api.Properties;
 import org.sonar.api.Property;
 import org.sonar.api.SonarPlugin;
+import org.sonar.plugins.cxx.clangtidy.CxxClangTidyRuleRepository;
+import org.sonar.plugins.cxx.clangtidy.CxxClangTidySensor;
 import org.sonar.plugins.cxx.coverage.CxxCoverageSensor;
 import org.sonar.plugins.cxx.cppcheck.CxxCppCheckRuleRepository;
 import org.sonar.plugins.cxx.cppcheck.CxxCppCheckSensor;
@@ -71,6 +73,67 @@ import java.util.List;
     description = "Comma-separated list of suffixes for header files to analyze. Leave empty to use the default.",
     global = true,
     project = true),
+  @Property(
+    key = CxxPlugin.SCAN_BATCH_SIZE_KEY,
+    defaultValue = "0",
+    name = "Number of files per scan batch",
+    description = "Source files are scanned in batches of this size and the results of each batch are saved"
+      + " before the next one starts, which bounds the memory needed by the analysis. Use 0 to scan all files at once.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxPlugin.SCAN_STATISTICS_KEY,
+    defaultValue = "false",
+    name = "Log scan statistics",
+    description = "Measure the time spent in lexing, preprocessing, parsing and in every visitor and log the most"
+      + " expensive visitors and files at the end of the analysis.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxPlugin.SCAN_STATISTICS_PATH_KEY,
+    defaultValue = "",
+    name = "Path of the scan statistics file",
+    description = "Relative to projects' root. When set, all measured scan times are written as JSON to this file.",
+    global = false,
+    project = true),
+  @Property(
+    key = CxxPlugin.REPORT_THREADS_KEY,
+    defaultValue = "1",
+    name = "Number of threads parsing reports",
+    description = "Report files of the cppcheck, pclint, rats, valgrind, vera++, clang-tidy, external rules and coverage sensors"
+      + " are parsed on this many threads. The results are saved in the order of the report files in any case.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxPlugin.CPD_THREADS_KEY,
+    defaultValue = "1",
+    name = "Number of threads tokenizing files for duplication detection",
+    description = "Files are tokenized ahead on this many threads while duplications are detected.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxPlugin.CPD_IGNORE_LITERALS_KEY,
+    defaultValue = "false",
+    name = "Ignore literals in duplication detection",
+    description = "Code differing only in the values of number, string and character literals is considered duplicated.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxPlugin.CPD_IGNORE_IDENTIFIERS_KEY,
+    defaultValue = "false",
+    name = "Ignore identifiers in duplication detection",
+    description = "Code differing only in the names of identifiers is considered duplicated.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxPlugin.PATH_REWRITES_KEY,
+    defaultValue = "",
+    name = "Path rewrites for report files",
+    description = "Comma-separated list of 'from=to' prefixes. Paths in reports starting with a 'from' prefix, e.g. the"
+      + " build directory of another machine, are looked up with the 'to' prefix instead. Relative paths are relative"
+      + " to projects' root.",
+    global = true,
+    project = true),
   @Property(
     key = CxxCppCheckSensor.REPORT_PATH_KEY,
     defaultValue = "",
@@ -127,6 +190,14 @@ import java.util.List;
     description = "Relative to projects' root. Ant patterns are accepted",
     global = false,
     project = true),
+  @Property(
+    key = CxxClangTidySensor.REPORT_PATH_KEY,
+    defaultValue = "",
+    name = "Path to clang-tidy report(s)",
+    description = "Relative to projects' root. Ant patterns are accepted. SARIF logs and the YAML files written by"
+      + " 'clang-tidy --export-fixes' are supported.",
+    global = false,
+    project = true),
   @Property(
     key = CxxXunitSensor.REPORT_PATH_KEY,
     defaultValue = "",
@@ -140,6 +211,28 @@ import java.util.List;
     name = "URL of the xslt transformer",
     description = "TODO",
     global = false,
+    project = true),
+  @Property(
+    key = CxxXunitSensor.MAX_STACK_TRACE_LENGTH_KEY,
+    defaultValue = "0",
+    name = "Maximum length of test stack traces",
+    description = "Stack traces of erroneous and failed tests are cut after this many characters. Use 0 to keep them entirely.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxXunitSensor.MAX_DETAILED_TESTS_KEY,
+    defaultValue = "0",
+    name = "Maximum number of detailed tests per test file",
+    description = "Details are stored for this many tests of a test file, the remaining ones are only counted."
+      + " Use 0 to store the details of all tests.",
+    global = true,
+    project = true),
+  @Property(
+    key = CxxXunitSensor.FAILURES_ONLY_DETAILS_KEY,
+    defaultValue = "false",
+    name = "Store details of failed tests only",
+    description = "Store the details of erroneous and failed tests only. Passed and skipped tests are only counted.",
+    global = true,
     project = true)
 })
 public final class CxxPlugin extends SonarPlugin {
@@ -147,6 +240,14 @@ public final class CxxPlugin extends SonarPlugin {
   static final String HEADER_FILE_SUFFIXES_KEY = "sonar.cxx.suffixes.headers";
   public static final String DEFINES_KEY = "sonar.cxx.defines";
   public static final String INCLUDE_DIRECTORIES_KEY = "sonar.cxx.include_directories";
+  public static final String SCAN_BATCH_SIZE_KEY = "sonar.cxx.scan.batchSize";
+  public static final String SCAN_STATISTICS_KEY = "sonar.cxx.scan.statistics";
+  public static final String SCAN_STATISTICS_PATH_KEY = "sonar.cxx.scan.statisticsPath";
+  public static final String REPORT_THREADS_KEY = "sonar.cxx.reports.threads";
+  public static final String PATH_REWRITES_KEY = "sonar.cxx.reports.pathRewrites";
+  public static final String CPD_THREADS_KEY = "sonar.cxx.cpd.threads";
+  public static final String CPD_IGNORE_LITERALS_KEY = "sonar.cxx.cpd.ignoreLiterals";
+  public static final String CPD_IGNORE_IDENTIFIERS_KEY = "sonar.cxx.cpd.ignoreIdentifiers";
 
   /**
    * {@inheritDoc}
@@ -170,6 +271,8 @@ public final class CxxPlugin extends SonarPlugin {
     l.add(CxxVeraxxSensor.class);
     l.add(CxxValgrindRuleRepository.class);
     l.add(CxxValgrindSensor.class);
+    l.add(CxxClangTidyRuleRepository.class);
+    l.add(CxxClangTidySensor.class);
     l.add(CxxDefaultProfile.class);
     l.add(CxxCommonRulesEngineProvider.class);
     l.add(CxxExternalRulesSensor.class);
@@ -19,40 +19,258 @@
  */
 package org.sonar.plugins.cxx;
 
+import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.Lexer;
 import net.sourceforge.pmd.cpd.SourceCode;
 import net.sourceforge.pmd.cpd.TokenEntry;
 import net.sourceforge.pmd.cpd.Tokenizer;
 import net.sourceforge.pmd.cpd.Tokens;
+import org.sonar.api.utils.SonarException;
 import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxTokenStore;
+import org.sonar.cxx.api.CxxTokenType;
 import org.sonar.cxx.lexer.CxxLexer;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Tokenizer for the copy-paste detection. Every thread reuses its lexer for
+ * all files. When the files to analyse are known in advance, the files following
+ * the requested one are lexed ahead on a pool of threads; the tokens are always
+ * handed to the CPD engine on the calling thread, in the order it asks for them.
+ * Files whose tokens have been recorded while the squid sensor scanned them are
+ * not lexed at all.
+ */
 public class CxxTokenizer implements Tokenizer {
+  // images of folded tokens, '$' does not occur in C++ tokens
+  static final String NUMBER_IMAGE = "$number";
+  static final String STRING_IMAGE = "$string";
+  static final String CHARACTER_IMAGE = "$char";
+  static final String IDENTIFIER_IMAGE = "$id";
+  // the engine may stop asking before the last file, the idle threads end then
+  static final long KEEP_ALIVE_SECONDS = 2;
 
   private final Charset charset;
+  private final boolean ignoreLiterals;
+  private final boolean ignoreIdentifiers;
+  private final List<File> files;
+  private final int threads;
+  private final CxxTokenStore tokenStore;
+  private final ThreadLocal<Lexer> lexer = new ThreadLocal<Lexer>() {
+    @Override
+    protected Lexer initialValue() {
+      return CxxLexer.create(new CxxConfiguration(charset));
+    }
+  };
+
+  // state of lexing ahead: absolute path -> index in files and pending results
+  private final Map<String, Integer> fileIndexes = new HashMap<String, Integer>();
+  private final Map<String, Future<FileTokens>> prefetched = new HashMap<String, Future<FileTokens>>();
+  private int nextToPrefetch;
+  private ThreadPoolExecutor executor;
 
   public CxxTokenizer(Charset charset) {
+    this(charset, false, false, Collections.<File>emptyList(), 1);
+  }
+
+  /**
+   * @param ignoreLiterals Whether all literals of a kind get the same image
+   * @param ignoreIdentifiers Whether all identifiers get the same image
+   * @param files The files the CPD engine will ask for, in the expected order
+   * @param threads The number of threads lexing the files ahead; 1 lexes
+   *        every file when it is asked for
+   */
+  public CxxTokenizer(Charset charset, boolean ignoreLiterals, boolean ignoreIdentifiers,
+      List<File> files, int threads) {
+    this(charset, ignoreLiterals, ignoreIdentifiers, files, threads, null);
+  }
+
+  /**
+   * @param tokenStore The tokens recorded by the squid sensor or null
+   */
+  public CxxTokenizer(Charset charset, boolean ignoreLiterals, boolean ignoreIdentifiers,
+      List<File> files, int threads, CxxTokenStore tokenStore) {
     this.charset = charset;
+    this.ignoreLiterals = ignoreLiterals;
+    this.ignoreIdentifiers = ignoreIdentifiers;
+    this.files = files;
+    this.threads = threads;
+    this.tokenStore = tokenStore;
+    for (int i = 0; i < files.size(); i++) {
+      fileIndexes.put(files.get(i).getAbsolutePath(), i);
+    }
   }
 
   public final void tokenize(SourceCode source, Tokens cpdTokens) {
-    Lexer lexer = CxxLexer.create(new CxxConfiguration(charset));
     String fileName = source.getFileName();
-    List<Token> tokens = lexer.lex(new File(fileName));
-    for (Token token : tokens) {
-      TokenEntry cpdToken = new TokenEntry(getTokenImage(token), fileName, token.getLine());
-      cpdTokens.add(cpdToken);
+    FileTokens tokens = take(fileName);
+    for (int i = 0; i < tokens.size; i++) {
+      cpdTokens.add(new TokenEntry(tokens.images[i], fileName, tokens.lines[i]));
     }
     cpdTokens.add(TokenEntry.getEOF());
   }
 
-  private String getTokenImage(Token token) {
-    return token.getValue();
+  private FileTokens take(String fileName) {
+    String path = new File(fileName).getAbsolutePath();
+    if (tokenStore != null) {
+      CxxTokenStore.FileTokens recorded = tokenStore.take(path);
+      if (recorded != null) {
+        return fromStore(recorded);
+      }
+      if (tokenStore.isEmpty()) {
+        // nothing (more) has been recorded, e.g. because the squid sensor did not
+        // run; nothing has to be kept for later requests either
+        tokenStore.close();
+      }
+    }
+    if (threads > 1) {
+      Integer index = fileIndexes.get(path);
+      if (index != null) {
+        prefetch(index);
+      }
+      Future<FileTokens> result = prefetched.remove(path);
+      if (result != null) {
+        return waitFor(result);
+      }
+    }
+    return lex(new File(fileName));
+  }
+
+  /**
+   * Submits the files following the given one, keeping at most twice as
+   * many files lexed ahead as there are threads, and at most one file
+   * being lexed per thread. Files before the given one
+   * have been skipped by the engine, their results are dropped.
+   */
+  private void prefetch(int index) {
+    Iterator<Map.Entry<String, Future<FileTokens>>> pending = prefetched.entrySet().iterator();
+    while (pending.hasNext()) {
+      if (fileIndexes.get(pending.next().getKey()) < index) {
+        pending.remove();
+      }
+    }
+
+    if (executor == null) {
+      // without core threads every thread ends after being idle for a while;
+      // a file handed over while all threads are busy is lexed by the caller
+      executor = new ThreadPoolExecutor(0, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+          new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+              Thread thread = new Thread(runnable, "cxx-cpd-tokenizer");
+              thread.setDaemon(true);
+              return thread;
+            }
+          }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+    nextToPrefetch = Math.max(nextToPrefetch, index + 1);
+    while (nextToPrefetch < files.size() && prefetched.size() < 2 * threads && lexing() < threads) {
+      final File file = files.get(nextToPrefetch++);
+      if (tokenStore != null && tokenStore.contains(file.getAbsolutePath())) {
+        continue;
+      }
+      prefetched.put(file.getAbsolutePath(), executor.submit(new Callable<FileTokens>() {
+        public FileTokens call() {
+          return lex(file);
+        }
+      }));
+    }
+    if (nextToPrefetch >= files.size()) {
+      // the submitted files are still lexed
+      executor.shutdown();
+    }
+  }
+
+  private int lexing() {
+    int count = 0;
+    for (Future<FileTokens> result : prefetched.values()) {
+      if (!result.isDone()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static FileTokens waitFor(Future<FileTokens> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while tokenizing", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new SonarException("Cannot tokenize", cause);
+    }
+  }
+
+  private FileTokens lex(File file) {
+    List<Token> tokens = lexer.get().lex(file);
+    FileTokens result = new FileTokens(tokens.size());
+    for (Token token : tokens) {
+      result.add(getTokenImage(token.getType(), token.getValue()), token.getLine());
+    }
+    return result;
+  }
+
+  private FileTokens fromStore(CxxTokenStore.FileTokens recorded) {
+    FileTokens result = new FileTokens(recorded.size());
+    for (int i = 0; i < recorded.size(); i++) {
+      result.add(getTokenImage(recorded.getType(i), recorded.getImage(i)), recorded.getLine(i));
+    }
+    return result;
+  }
+
+  private String getTokenImage(TokenType type, String value) {
+    if (ignoreLiterals) {
+      if (type == CxxTokenType.NUMBER) {
+        return NUMBER_IMAGE;
+      } else if (type == CxxTokenType.STRING) {
+        return STRING_IMAGE;
+      } else if (type == CxxTokenType.CHARACTER) {
+        return CHARACTER_IMAGE;
+      }
+    }
+    if (ignoreIdentifiers && type == GenericTokenType.IDENTIFIER) {
+      return IDENTIFIER_IMAGE;
+    }
+    return value;
+  }
+
+  /**
+   * The images and lines of the tokens of a file
+   */
+  private static final class FileTokens {
+    private final String[] images;
+    private final int[] lines;
+    private int size;
+
+    FileTokens(int capacity) {
+      images = new String[capacity];
+      lines = new int[capacity];
+    }
+
+    void add(String image, int line) {
+      images[size] = image;
+      lines[size] = line;
+      size++;
+    }
   }
 
 }
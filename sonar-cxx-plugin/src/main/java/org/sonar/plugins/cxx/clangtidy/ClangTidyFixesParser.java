@@ -0,0 +1,183 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.clangtidy;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat.IssueHandler;
+import org.sonar.plugins.cxx.utils.CxxUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the diagnostics of the YAML files written by 'clang-tidy --export-fixes'.
+ * The files are read line by line, which is enough for the fixed layout clang-tidy
+ * writes, in both the flat format up to clang 8 and the nested DiagnosticMessage
+ * format of later versions. Diagnostics are located by byte offsets, which are
+ * turned into lines by reading the source files once.
+ */
+class ClangTidyFixesParser {
+  private static final String DIAGNOSTIC = "- DiagnosticName:";
+  private static final String MESSAGE = "Message:";
+  private static final String FILE_PATH = "FilePath:";
+  private static final String FILE_OFFSET = "FileOffset:";
+
+  private final File baseDir;
+  // source file -> offsets of the line starts
+  private final Map<String, int[]> lineStarts = new HashMap<String, int[]>();
+
+  /**
+   * @param baseDir relative file paths are read from here
+   */
+  ClangTidyFixesParser(File baseDir) {
+    this.baseDir = baseDir;
+  }
+
+  /**
+   * Passes every diagnostic to the handler
+   */
+  void parse(File report, IssueHandler handler) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(CxxUtils.openReport(report), "UTF-8"));
+    try {
+      Diagnostic diagnostic = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String trimmed = line.trim();
+        if (trimmed.startsWith(DIAGNOSTIC)) {
+          report(diagnostic, report, handler);
+          diagnostic = new Diagnostic(scalar(trimmed, DIAGNOSTIC));
+        } else if (diagnostic != null) {
+          // the first occurrence is the diagnostic's own, later ones belong to notes
+          if (diagnostic.message == null && trimmed.startsWith(MESSAGE)) {
+            diagnostic.message = scalar(trimmed, MESSAGE);
+          } else if (diagnostic.file == null && trimmed.startsWith(FILE_PATH)) {
+            diagnostic.file = scalar(trimmed, FILE_PATH);
+          } else if (diagnostic.offset < 0 && trimmed.startsWith(FILE_OFFSET)) {
+            diagnostic.offset = Integer.parseInt(scalar(trimmed, FILE_OFFSET));
+          }
+        }
+      }
+      report(diagnostic, report, handler);
+    } finally {
+      IOUtils.closeQuietly(reader);
+    }
+  }
+
+  private void report(Diagnostic diagnostic, File report, IssueHandler handler) {
+    if (diagnostic == null) {
+      return;
+    }
+    if (diagnostic.file == null || "".equals(diagnostic.file)) {
+      CxxUtils.LOG.debug("Skipping clang-tidy diagnostic without file: '{}'", diagnostic.message);
+      return;
+    }
+    int line = toLine(diagnostic.file, diagnostic.offset);
+    if (line > 0) {
+      handler.handleIssue(diagnostic.file, line, diagnostic.name, diagnostic.message);
+    } else {
+      CxxUtils.LOG.debug("Cannot locate clang-tidy diagnostic '{}' in '{}'", diagnostic.message, diagnostic.file);
+    }
+  }
+
+  /**
+   * Returns the line of the given byte offset, or 0 if the file cannot be read
+   */
+  private int toLine(String file, int offset) {
+    int[] starts = lineStarts.get(file);
+    if (starts == null) {
+      File source = new File(file);
+      starts = readLineStarts(source.isAbsolute() ? source : new File(baseDir, file));
+      lineStarts.put(file, starts);
+    }
+    if (starts.length == 0) {
+      return 0;
+    }
+    int index = Arrays.binarySearch(starts, Math.max(offset, 0));
+    return index >= 0 ? index + 1 : -index - 1;
+  }
+
+  private static int[] readLineStarts(File file) {
+    byte[] content;
+    try {
+      content = FileUtils.readFileToByteArray(file);
+    } catch (IOException e) {
+      CxxUtils.LOG.debug("Cannot read '{}': {}", file, e.getMessage());
+      return new int[0];
+    }
+    int[] starts = new int[64];
+    int lines = 1;
+    for (int i = 0; i < content.length; i++) {
+      if (content[i] == '\n') {
+        if (lines == starts.length) {
+          starts = copy(starts, lines * 2);
+        }
+        starts[lines++] = i + 1;
+      }
+    }
+    return copy(starts, lines);
+  }
+
+  private static int[] copy(int[] array, int length) {
+    int[] copy = new int[length];
+    System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+    return copy;
+  }
+
+  /**
+   * Returns the YAML scalar following the key, unquoted
+   */
+  static String scalar(String line, String key) {
+    String value = line.substring(key.length()).trim();
+    if (value.length() >= 2 && value.startsWith("'") && value.endsWith("'")) {
+      return value.substring(1, value.length() - 1).replace("''", "'");
+    }
+    if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 1; i < value.length() - 1; i++) {
+        char c = value.charAt(i);
+        if (c == '\\' && i + 1 < value.length() - 1) {
+          char next = value.charAt(++i);
+          sb.append(next == 'n' ? '\n' : next == 't' ? '\t' : next);
+        } else {
+          sb.append(c);
+        }
+      }
+      return sb.toString();
+    }
+    return value;
+  }
+
+  private static final class Diagnostic {
+    private final String name;
+    private String message;
+    private String file;
+    private int offset = -1;
+
+    Diagnostic(String name) {
+      this.name = name;
+    }
+  }
+}
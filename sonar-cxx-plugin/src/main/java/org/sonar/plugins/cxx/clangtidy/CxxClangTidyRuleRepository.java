@@ -17,18 +17,28 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.plugins.cxx.cohesion;
+package org.sonar.plugins.cxx.clangtidy;
 
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.resources.InputFile;
-import org.sonar.api.resources.Project;
-import org.sonar.plugins.cxx.utils.CxxFileSensor;
+import org.sonar.api.platform.ServerFileSystem;
+import org.sonar.api.rules.XMLRuleParser;
+import org.sonar.plugins.cxx.utils.CxxAbstractRuleRepository;
+
+/**
+ * {@inheritDoc}
+ */
+public class CxxClangTidyRuleRepository extends CxxAbstractRuleRepository {
+  static final String KEY = "clangtidy";
+
+  /**
+   * {@inheritDoc}
+   */
+  public CxxClangTidyRuleRepository(ServerFileSystem fileSystem, XMLRuleParser xmlRuleParser) {
+    super(fileSystem, xmlRuleParser, KEY);
+    setName(KEY);
+  }
 
-public class CxxCohesionSensor extends CxxFileSensor {
   @Override
-  protected void parseFile(InputFile file, Project project, SensorContext context) {
-    // TODO: implement using SSLR. Its probably a good idea to look for exising
-    // SSLR based implementations for other languages. Use git to go back to look at
-    // the CDT based implementation, if necessary
+  protected String fileName() {
+    return "/clangtidy.xml";
   }
 }
@@ -0,0 +1,108 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.clangtidy;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.Project;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat;
+import org.sonar.plugins.cxx.utils.CxxReportSensor;
+import org.sonar.plugins.cxx.utils.CxxUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Sensor for clang-tidy and other analyzers writing SARIF logs. Reports are
+ * either SARIF (JSON) or the YAML files written by 'clang-tidy --export-fixes'.
+ */
+public class CxxClangTidySensor extends CxxReportSensor {
+  public static final String REPORT_PATH_KEY = "sonar.cxx.clangtidy.reportPath";
+  private static final String DEFAULT_REPORT_PATH = "clangtidy-reports/clangtidy-result-*";
+  private RulesProfile profile;
+
+  /**
+   * {@inheritDoc}
+   */
+  public CxxClangTidySensor(RuleFinder ruleFinder, Settings conf, RulesProfile profile) {
+    super(ruleFinder, conf);
+    this.profile = profile;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean shouldExecuteOnProject(Project project) {
+    return super.shouldExecuteOnProject(project)
+      && !profile.getActiveRulesByRepository(CxxClangTidyRuleRepository.KEY).isEmpty();
+  }
+
+  @Override
+  protected String reportPathKey() {
+    return REPORT_PATH_KEY;
+  }
+
+  @Override
+  protected String defaultReportPath() {
+    return DEFAULT_REPORT_PATH;
+  }
+
+  @Override
+  protected boolean canProcessReportsInParallel() {
+    return true;
+  }
+
+  @Override
+  protected void processReport(final Project project, final SensorContext context, File report)
+      throws IOException
+  {
+    final File baseDir = project.getFileSystem().getBasedir();
+    CxxIssueReportFormat.IssueHandler handler = new CxxIssueReportFormat.IssueHandler() {
+      public void handleIssue(String file, int line, String id, String msg) {
+        String path = new File(file).isAbsolute() ? file : new File(baseDir, file).getPath();
+        saveViolation(project, context, CxxClangTidyRuleRepository.KEY, path, line, id, msg);
+      }
+    };
+
+    if (isJson(report)) {
+      new SarifParser().parse(report, handler);
+    } else {
+      new ClangTidyFixesParser(baseDir).parse(report, handler);
+    }
+  }
+
+  private static boolean isJson(File report) throws IOException {
+    InputStream input = CxxUtils.openReport(report);
+    try {
+      int c = input.read();
+      while (c != -1 && Character.isWhitespace(c)) {
+        c = input.read();
+      }
+      return c == '{';
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+}
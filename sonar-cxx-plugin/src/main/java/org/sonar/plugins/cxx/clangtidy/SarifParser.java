@@ -0,0 +1,395 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.clangtidy;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat.IssueHandler;
+import org.sonar.plugins.cxx.utils.CxxUtils;
+import org.sonar.plugins.cxx.utils.JsonReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the results of SARIF 2.1 logs, as written by clang and many other
+ * analyzers. The log is pulled value by value and every result is passed on
+ * as soon as it is read. Only a result referring to a rule by index before
+ * the rules of its run, or to a uri base id before the base ids of its run,
+ * is kept until the end of the run.
+ */
+class SarifParser {
+
+  /**
+   * Passes the rule id, the location of the first result location and the
+   * message of every failing, unsuppressed result to the handler. A message
+   * given by id is taken from the message strings of the rule.
+   */
+  void parse(File report, IssueHandler handler) throws IOException {
+    InputStreamReader input = new InputStreamReader(CxxUtils.openReport(report), "UTF-8");
+    try {
+      JsonReader reader = new JsonReader(input);
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("runs".equals(reader.nextName())) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            parseRun(reader, handler);
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private void parseRun(JsonReader reader, IssueHandler handler) throws IOException {
+    Run run = new Run();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("tool".equals(name)) {
+        parseTool(reader, run);
+        run.toolRead = true;
+      } else if ("originalUriBaseIds".equals(name)) {
+        parseUriBaseIds(reader, run);
+        run.uriBaseIdsRead = true;
+      } else if ("results".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          Result result = parseResult(reader);
+          if (!result.isReported()) {
+            CxxUtils.LOG.debug("Skipping SARIF result of kind '{}' or suppressed: '{}'", result.kind, result.message);
+          } else if (run.canResolve(result)) {
+            handleResult(result, run, handler);
+          } else {
+            run.pendingResults.add(result);
+          }
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    for (Result result : run.pendingResults) {
+      handleResult(result, run, handler);
+    }
+  }
+
+  private void parseTool(JsonReader reader, Run run) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("driver".equals(reader.nextName())) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          if ("rules".equals(reader.nextName())) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+              parseRule(reader, run);
+            }
+            reader.endArray();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  private void parseRule(JsonReader reader, Run run) throws IOException {
+    String id = null;
+    Map<String, String> messageStrings = new HashMap<String, String>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("id".equals(name) && reader.peek() == JsonReader.Token.STRING) {
+        id = reader.nextString();
+      } else if ("messageStrings".equals(name)) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String messageId = reader.nextName();
+          String text = readStringMember(reader, "text");
+          if (text != null) {
+            messageStrings.put(messageId, text);
+          }
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    run.ruleIds.add(id);
+    if (id != null && !messageStrings.isEmpty()) {
+      run.messageStrings.put(id, messageStrings);
+    }
+  }
+
+  private void parseUriBaseIds(JsonReader reader, Run run) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String baseId = reader.nextName();
+      String uri = readStringMember(reader, "uri");
+      if (uri != null) {
+        run.uriBaseIds.put(baseId, uri);
+      }
+    }
+    reader.endObject();
+  }
+
+  private Result parseResult(JsonReader reader) throws IOException {
+    Result result = new Result();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("ruleId".equals(name)) {
+        result.ruleId = reader.nextString();
+      } else if ("ruleIndex".equals(name)) {
+        result.ruleIndex = reader.nextInt();
+      } else if ("rule".equals(name)) {
+        String id = readStringMember(reader, "id");
+        result.ruleId = result.ruleId == null ? id : result.ruleId;
+      } else if ("message".equals(name)) {
+        parseMessage(reader, result);
+      } else if ("kind".equals(name)) {
+        result.kind = reader.nextString();
+      } else if ("suppressions".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          String status = readStringMember(reader, "status");
+          // rejected suppressions and those under review are not in effect
+          result.suppressed |= status == null || "accepted".equals(status);
+        }
+        reader.endArray();
+      } else if ("locations".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          Location next = parseLocation(reader);
+          result.location = result.location == null ? next : result.location;
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return result;
+  }
+
+  private void parseMessage(JsonReader reader, Result result) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("text".equals(name) && reader.peek() == JsonReader.Token.STRING) {
+        result.message = reader.nextString();
+      } else if ("id".equals(name) && reader.peek() == JsonReader.Token.STRING) {
+        result.messageId = reader.nextString();
+      } else if ("arguments".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          if (reader.peek() == JsonReader.Token.STRING) {
+            result.messageArguments.add(reader.nextString());
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  private static void handleResult(Result result, Run run, IssueHandler handler) {
+    String ruleId = result.ruleId;
+    if (ruleId == null && result.ruleIndex >= 0 && result.ruleIndex < run.ruleIds.size()) {
+      ruleId = run.ruleIds.get(result.ruleIndex);
+    }
+    String message = result.message == null ? run.message(ruleId, result) : result.message;
+    Location location = result.location;
+    if (ruleId == null || location == null || location.uri == null) {
+      CxxUtils.LOG.debug("Skipping SARIF result without rule or location: '{}'", message);
+      return;
+    }
+    if (message == null) {
+      CxxUtils.LOG.debug("Skipping SARIF result of rule '{}' without message", ruleId);
+      return;
+    }
+    handler.handleIssue(run.toPath(location.uri, location.uriBaseId), location.line, ruleId, message);
+  }
+
+  private Location parseLocation(JsonReader reader) throws IOException {
+    Location location = new Location();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("physicalLocation".equals(reader.nextName())) {
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          if ("artifactLocation".equals(name)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+              String member = reader.nextName();
+              if ("uri".equals(member)) {
+                location.uri = reader.nextString();
+              } else if ("uriBaseId".equals(member)) {
+                location.uriBaseId = reader.nextString();
+              } else {
+                reader.skipValue();
+              }
+            }
+            reader.endObject();
+          } else if ("region".equals(name)) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+              if ("startLine".equals(reader.nextName())) {
+                location.line = reader.nextInt();
+              } else {
+                reader.skipValue();
+              }
+            }
+            reader.endObject();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return location;
+  }
+
+  /**
+   * Reads an object and returns the value of its string member with the given name
+   */
+  private static String readStringMember(JsonReader reader, String member) throws IOException {
+    String value = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (member.equals(reader.nextName()) && reader.peek() == JsonReader.Token.STRING) {
+        value = reader.nextString();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return value;
+  }
+
+  private static final class Location {
+    private String uri;
+    private String uriBaseId;
+    private int line = 1;
+  }
+
+  private static final class Result {
+    private String ruleId;
+    private int ruleIndex = -1;
+    private String message;
+    private String messageId;
+    private final List<String> messageArguments = new ArrayList<String>();
+    private String kind;
+    private boolean suppressed;
+    private Location location;
+
+    /**
+     * Whether the result is a failure in effect; 'fail' is the default kind
+     */
+    boolean isReported() {
+      return !suppressed && (kind == null || "fail".equals(kind));
+    }
+  }
+
+  private static final class Run {
+    private final List<String> ruleIds = new ArrayList<String>();
+    private final Map<String, Map<String, String>> messageStrings = new HashMap<String, Map<String, String>>();
+    private final Map<String, String> uriBaseIds = new HashMap<String, String>();
+    private final List<Result> pendingResults = new ArrayList<Result>();
+    private boolean toolRead;
+    private boolean uriBaseIdsRead;
+
+    /**
+     * Whether everything of the run the result refers to has already been read
+     */
+    boolean canResolve(Result result) {
+      boolean needsRules = (result.ruleId == null && result.ruleIndex >= 0)
+        || (result.message == null && result.messageId != null);
+      boolean needsUriBaseIds = result.location != null && result.location.uriBaseId != null
+        && !uriBaseIds.containsKey(result.location.uriBaseId);
+      return (toolRead || !needsRules) && (uriBaseIdsRead || !needsUriBaseIds);
+    }
+
+    /**
+     * The message string of the rule the result refers to by id, with the
+     * placeholders '{0}', '{1}'... replaced by the arguments of the result
+     */
+    String message(String ruleId, Result result) {
+      Map<String, String> strings = ruleId == null ? null : messageStrings.get(ruleId);
+      String message = strings == null || result.messageId == null ? null : strings.get(result.messageId);
+      if (message != null) {
+        for (int i = 0; i < result.messageArguments.size(); i++) {
+          message = message.replace("{" + i + "}", result.messageArguments.get(i));
+        }
+      }
+      return message;
+    }
+
+    /**
+     * Turns an artifact uri into a file path. Relative uris are resolved against
+     * their base id if the log defines it, and stay relative otherwise.
+     */
+    String toPath(String uri, String uriBaseId) {
+      try {
+        URI resolved = new URI(uri);
+        String base = uriBaseId == null ? null : uriBaseIds.get(uriBaseId);
+        if (!resolved.isAbsolute() && base != null) {
+          resolved = new URI(base).resolve(resolved);
+        }
+        if ("file".equals(resolved.getScheme())) {
+          return new File(resolved).getPath();
+        }
+        return resolved.isAbsolute() ? uri : resolved.getPath();
+      } catch (Exception e) {
+        // not a valid uri, which some tools write for plain paths
+        return uri;
+      }
+    }
+  }
+}
@@ -21,17 +21,12 @@ package org.sonar.plugins.cxx.coverage;
 
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
-import org.sonar.api.measures.CoverageMeasuresBuilder;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.plugins.cxx.utils.CxxUtils;
-import org.apache.commons.lang.StringUtils;
 
 import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -39,146 +34,157 @@ import java.util.Map;
  */
 public class BullseyeParser implements CoverageParser {
 
-  private String prevLine;
-  private int totaldecisions;
-  private int totalcovereddecisions;
-  private int totalconditions;
-  private int totalcoveredconditions;
+  private static final int NO_LINE = -1;
 
   /**
    * {@inheritDoc}
    */
-  public void parseReport(File xmlFile, final Map<String, CoverageMeasuresBuilder> coverageData)
+  public boolean canParse(ReportHeader header) {
+    return "BullseyeCoverage".equals(header.getRootElement());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void parseReport(File xmlFile, final Map<String, FileCoverage> coverageData)
       throws XMLStreamException
   {
     CxxUtils.LOG.info("Bullseye - Parsing report '{}'", xmlFile);
 
+    final ReportWalker walker = new ReportWalker();
     StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
       /**
        * {@inheritDoc}
        */
       public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
         rootCursor.advance();
-        collectCoverage2(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("folder"), coverageData);
+        walker.collectCoverage2(rootCursor.getAttrValue("dir"), rootCursor.childElementCursor("folder"), coverageData);
       }
     });
-    parser.parse(xmlFile);
+    CxxUtils.parseReport(parser, xmlFile);
   }
 
-  private void collectCoverage2(String refPath, SMInputCursor folder, final Map<String, CoverageMeasuresBuilder> coverageData)
-      throws XMLStreamException {
-
-    LinkedList<String> path = new LinkedList<String>();
-    while (folder.getNext() != null) {
-      String folderName = folder.getAttrValue("name");
-      path.add(folderName);
-      recTreeWalk(refPath, folder, path, coverageData);
-      path.removeLast();
+  /**
+   * Holds the state of parsing a single report, so that a parser can be used
+   * for several reports concurrently
+   */
+  private static class ReportWalker {
+    private int prevLine;
+    private int totaldecisions;
+    private int totalcovereddecisions;
+    private int totalconditions;
+    private int totalcoveredconditions;
+
+    void collectCoverage2(String refPath, SMInputCursor folder, final Map<String, FileCoverage> coverageData)
+        throws XMLStreamException {
+
+      // the path of the current element, every folder appends its name and a '/'
+      StringBuilder path = new StringBuilder();
+      while (folder.getNext() != null) {
+        String folderName = folder.getAttrValue("name");
+        path.append(folderName).append('/');
+
+        // whether a path is absolute depends on its first component only
+        String prefix = new File(path.toString() + "x").isAbsolute() ? "" : refPath;
+        recTreeWalk(prefix, folder, path, coverageData);
+        path.setLength(0);
+      }
     }
-  }
 
-  private void probWalk(SMInputCursor prob, CoverageMeasuresBuilder fileMeasuresBuilderIn) throws XMLStreamException {
-    String line = prob.getAttrValue("line");
-    String kind = prob.getAttrValue("kind");
-    String event = prob.getAttrValue("event");
-    if (!line.equals(prevLine)) {
-      saveConditions(fileMeasuresBuilderIn);
+    private void probWalk(SMInputCursor prob, FileCoverage fileCoverage) throws XMLStreamException {
+      int line = Integer.parseInt(prob.getAttrValue("line"));
+      String kind = prob.getAttrValue("kind");
+      String event = prob.getAttrValue("event");
+      if (line != prevLine) {
+        saveConditions(fileCoverage);
+      }
+      updateMeasures(kind, event, line, fileCoverage);
+      prevLine = line;
     }
-    updateMeasures(kind, event, line, fileMeasuresBuilderIn);
-    prevLine = line;
-  }
 
-  private void funcWalk(SMInputCursor func, CoverageMeasuresBuilder fileMeasuresBuilderIn) throws XMLStreamException {
-    SMInputCursor prob = func.childElementCursor();
-    while (prob.getNext() != null) {
-      probWalk(prob, fileMeasuresBuilderIn);
+    private void funcWalk(SMInputCursor func, FileCoverage fileCoverage) throws XMLStreamException {
+      SMInputCursor prob = func.childElementCursor();
+      while (prob.getNext() != null) {
+        probWalk(prob, fileCoverage);
+      }
+      saveConditions(fileCoverage);
     }
-    saveConditions(fileMeasuresBuilderIn);
-  }
 
-  private void fileWalk(SMInputCursor file, CoverageMeasuresBuilder fileMeasuresBuilderIn) throws XMLStreamException {
-    SMInputCursor func = file.childElementCursor();
-    while (func.getNext() != null) {
-      funcWalk(func, fileMeasuresBuilderIn);
+    private void fileWalk(SMInputCursor file, FileCoverage fileCoverage) throws XMLStreamException {
+      prevLine = NO_LINE;
+      SMInputCursor func = file.childElementCursor();
+      while (func.getNext() != null) {
+        funcWalk(func, fileCoverage);
+      }
     }
-  }
 
-  private void recTreeWalk(String refPath, SMInputCursor folder, List<String> path, final Map<String, CoverageMeasuresBuilder> coverageData)
-      throws XMLStreamException {
-    SMInputCursor child = folder.childElementCursor();
-    while (child.getNext() != null) {
-      String folderChildName = child.getLocalName();
-      String name = child.getAttrValue("name");
-      path.add(name);
-      if (folderChildName.equalsIgnoreCase("src")) {
-        String fileName = "";
-        Iterator<String> iterator = path.iterator();
-        while (iterator.hasNext()) {
-          fileName += iterator.next() + "/";
+    private void recTreeWalk(String prefix, SMInputCursor folder, StringBuilder path, final Map<String, FileCoverage> coverageData)
+        throws XMLStreamException {
+      int pathLength = path.length();
+      SMInputCursor child = folder.childElementCursor();
+      while (child.getNext() != null) {
+        String folderChildName = child.getLocalName();
+        String name = child.getAttrValue("name");
+        if (folderChildName.equalsIgnoreCase("src")) {
+          FileCoverage fileCoverage = new FileCoverage();
+          fileWalk(child, fileCoverage);
+          coverageData.put(new StringBuilder(prefix.length() + pathLength + name.length())
+              .append(prefix).append(path).append(name).toString(), fileCoverage);
+        } else {
+          path.append(name).append('/');
+          recTreeWalk(prefix, child, path, coverageData);
+          path.setLength(pathLength);
         }
-        
-        fileName = StringUtils.chop(fileName);
-        
-        if ((new File(fileName)).isAbsolute()) {
-          refPath = "";
-        }     
-        CoverageMeasuresBuilder fileMeasuresBuilderIn = CoverageMeasuresBuilder.create();
-        fileWalk(child, fileMeasuresBuilderIn);
-        coverageData.put(refPath + fileName, fileMeasuresBuilderIn);
-
-      } else {
-        recTreeWalk(refPath, child, path, coverageData);
       }
-      path.remove(path.size() - 1);
     }
-  }
 
-  private void saveConditions(CoverageMeasuresBuilder fileMeasuresBuilderIn) {
-    if (totaldecisions > 0 || totalconditions > 0) {
-      if (totalcovereddecisions == 0 && totalcoveredconditions == 0) {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 0);
-      } else {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(prevLine), 1);
-      }
-      if (totalconditions > 0) {
-        fileMeasuresBuilderIn.setConditions(Integer.parseInt(prevLine), totalconditions, totalcoveredconditions);
-      } else {
-        fileMeasuresBuilderIn.setConditions(Integer.parseInt(prevLine), 2, totalcovereddecisions);
+    private void saveConditions(FileCoverage fileCoverage) {
+      if (totaldecisions > 0 || totalconditions > 0) {
+        if (totalcovereddecisions == 0 && totalcoveredconditions == 0) {
+          fileCoverage.setHits(prevLine, 0);
+        } else {
+          fileCoverage.setHits(prevLine, 1);
+        }
+        if (totalconditions > 0) {
+          fileCoverage.setConditions(prevLine, totalconditions, totalcoveredconditions);
+        } else {
+          fileCoverage.setConditions(prevLine, 2, totalcovereddecisions);
+        }
       }
+      totaldecisions = 0;
+      totalcovereddecisions = 0;
+      totalconditions = 0;
+      totalcoveredconditions = 0;
     }
-    totaldecisions = 0;
-    totalcovereddecisions = 0;
-    totalconditions = 0;
-    totalcoveredconditions = 0;
-  }
 
-  private void updateMeasures(String kind, String event, String line, CoverageMeasuresBuilder fileMeasuresBuilderIn) {
+    private void updateMeasures(String kind, String event, int line, FileCoverage fileCoverage) {
 
-    if (kind.equalsIgnoreCase("decision") || kind.equalsIgnoreCase("condition")) {
-      if (kind.equalsIgnoreCase("condition")) {
-        totalconditions += 2;
-        totalcoveredconditions += 1;
-        if (event.equalsIgnoreCase("full")) {
+      if (kind.equalsIgnoreCase("decision") || kind.equalsIgnoreCase("condition")) {
+        if (kind.equalsIgnoreCase("condition")) {
+          totalconditions += 2;
           totalcoveredconditions += 1;
-        }
-        if (event.equalsIgnoreCase("none")) {
-          totalcoveredconditions -= 1;
+          if (event.equalsIgnoreCase("full")) {
+            totalcoveredconditions += 1;
+          }
+          if (event.equalsIgnoreCase("none")) {
+            totalcoveredconditions -= 1;
+          }
+        } else {
+          totaldecisions += 1;
+          totalcovereddecisions = 1;
+          if (event.equalsIgnoreCase("full")) {
+            totalcovereddecisions = 2;
+          }
+          if (event.equalsIgnoreCase("none")) {
+            totalcovereddecisions = 0;
+          }
         }
       } else {
-        totaldecisions += 1;
-        totalcovereddecisions = 1;
         if (event.equalsIgnoreCase("full")) {
-          totalcovereddecisions = 2;
+          fileCoverage.setHits(line, 1);
+        } else {
+          fileCoverage.setHits(line, 0);
         }
-        if (event.equalsIgnoreCase("none")) {
-          totalcovereddecisions = 0;
-        }
-      }
-    } else {
-      if (event.equalsIgnoreCase("full")) {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(line), 1);
-      } else {
-        fileMeasuresBuilderIn.setHits(Integer.parseInt(line), 0);
       }
     }
   }
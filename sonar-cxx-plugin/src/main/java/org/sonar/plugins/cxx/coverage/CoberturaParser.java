@@ -22,7 +22,6 @@ package org.sonar.plugins.cxx.coverage;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
-import org.sonar.api.measures.CoverageMeasuresBuilder;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.plugins.cxx.utils.CxxUtils;
 
@@ -38,7 +37,14 @@ public class CoberturaParser implements CoverageParser {
   /**
    * {@inheritDoc}
    */
-  public void parseReport(File xmlFile, final Map<String, CoverageMeasuresBuilder> coverageData)
+  public boolean canParse(ReportHeader header) {
+    return "coverage".equals(header.getRootElement());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void parseReport(File xmlFile, final Map<String, FileCoverage> coverageData)
       throws XMLStreamException
   {
     CxxUtils.LOG.info("Parsing report '{}'", xmlFile);
@@ -52,10 +58,10 @@ public class CoberturaParser implements CoverageParser {
         collectPackageMeasures(rootCursor.descendantElementCursor("package"), coverageData);
       }
     });
-    parser.parse(xmlFile);
+    CxxUtils.parseReport(parser, xmlFile);
   }
 
-  private void collectPackageMeasures(SMInputCursor pack, Map<String, CoverageMeasuresBuilder> coverageData)
+  private void collectPackageMeasures(SMInputCursor pack, Map<String, FileCoverage> coverageData)
       throws XMLStreamException
   {
     while (pack.getNext() != null) {
@@ -63,31 +69,31 @@ public class CoberturaParser implements CoverageParser {
     }
   }
 
-  private void collectFileMeasures(SMInputCursor clazz, Map<String, CoverageMeasuresBuilder> coverageData)
+  private void collectFileMeasures(SMInputCursor clazz, Map<String, FileCoverage> coverageData)
       throws XMLStreamException
   {
     while (clazz.getNext() != null) {
       String fileName = clazz.getAttrValue("filename");
-      CoverageMeasuresBuilder builder = coverageData.get(fileName);
-      if (builder == null) {
-        builder = CoverageMeasuresBuilder.create();
-        coverageData.put(fileName, builder);
+      FileCoverage fileCoverage = coverageData.get(fileName);
+      if (fileCoverage == null) {
+        fileCoverage = new FileCoverage();
+        coverageData.put(fileName, fileCoverage);
       }
-      collectFileData(clazz, builder);
+      collectFileData(clazz, fileCoverage);
     }
   }
 
-  private void collectFileData(SMInputCursor clazz, CoverageMeasuresBuilder builder) throws XMLStreamException {
+  private void collectFileData(SMInputCursor clazz, FileCoverage fileCoverage) throws XMLStreamException {
     SMInputCursor line = clazz.childElementCursor("lines").advance().childElementCursor("line");
     while (line.getNext() != null) {
       int lineId = Integer.parseInt(line.getAttrValue("number"));
-      builder.setHits(lineId, Integer.parseInt(line.getAttrValue("hits")));
+      fileCoverage.setHits(lineId, Integer.parseInt(line.getAttrValue("hits")));
 
       String isBranch = line.getAttrValue("branch");
       String text = line.getAttrValue("condition-coverage");
       if (StringUtils.equals(isBranch, "true") && StringUtils.isNotBlank(text)) {
         String[] conditions = StringUtils.split(StringUtils.substringBetween(text, "(", ")"), "/");
-        builder.setConditions(lineId, Integer.parseInt(conditions[1]), Integer.parseInt(conditions[0]));
+        fileCoverage.setConditions(lineId, Integer.parseInt(conditions[1]), Integer.parseInt(conditions[0]));
       }
     }
   }
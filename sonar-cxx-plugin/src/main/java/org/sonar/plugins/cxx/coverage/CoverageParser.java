@@ -19,11 +19,10 @@
  */
 package org.sonar.plugins.cxx.coverage;
 
-import org.sonar.api.measures.CoverageMeasuresBuilder;
-
 import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -32,11 +31,17 @@ import java.util.Map;
  */
 public interface CoverageParser {
   /**
-   * Parses the given report and stores the results in the according builder
+   * Detects whether the given report has the format understood by this parser
+   * @param header The beginning of the report
+   */
+  boolean canParse(ReportHeader header);
+
+  /**
+   * Parses the given report and stores the results in the according FileCoverage
    * @param xmlFile The report to parse
-   * @param coverageData A Map mapping source file names to coverage measures. Has
-   *        to be used to store the results into. 
+   * @param coverageData A Map mapping source file names to coverage data. Has
+   *        to be used to store the results into.
    */
-  void parseReport(File xmlFile, Map<String, CoverageMeasuresBuilder> coverageData)
-      throws XMLStreamException;
+  void parseReport(File xmlFile, Map<String, FileCoverage> coverageData)
+      throws XMLStreamException, IOException;
 }
@@ -22,20 +22,30 @@ package org.sonar.plugins.cxx.coverage;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
-import org.sonar.api.measures.CoverageMeasuresBuilder;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.SonarException;
+import org.sonar.plugins.cxx.CxxPlugin;
+import org.sonar.plugins.cxx.utils.CxxPathResolver;
+import org.sonar.plugins.cxx.utils.CxxReportLocator;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
 import org.sonar.plugins.cxx.utils.CxxUtils;
 
 import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * {@inheritDoc}
@@ -54,15 +64,36 @@ public class CxxCoverageSensor extends CxxReportSensor {
   private static final String OVERALL_DEFAULT_REPORT_PATH = "coverage-reports/overall-coverage-*.xml";
 
   private final Settings settings;
-  private static List<CoverageParser> parsers = new LinkedList<CoverageParser>();
+  private final List<CoverageParser> parsers;
 
   /**
    * {@inheritDoc}
    */
   public CxxCoverageSensor(Settings settings) {
+    this(settings, defaultParsers());
+  }
+
+  /**
+   * @param parsers The parsers for the supported report formats. Each report is
+   *        parsed by the first one detecting its format.
+   */
+  CxxCoverageSensor(Settings settings, List<CoverageParser> parsers) {
     this.settings = settings;
+    this.parsers = Collections.unmodifiableList(new ArrayList<CoverageParser>(parsers));
+
+    CxxReportLocator locator = CxxReportLocator.forSettings(settings);
+    locator.register(REPORT_PATH_KEY, DEFAULT_REPORT_PATH);
+    locator.register(IT_REPORT_PATH_KEY, IT_DEFAULT_REPORT_PATH);
+    locator.register(OVERALL_REPORT_PATH_KEY, OVERALL_DEFAULT_REPORT_PATH);
+  }
+
+  static List<CoverageParser> defaultParsers() {
+    List<CoverageParser> parsers = new ArrayList<CoverageParser>();
     parsers.add(new CoberturaParser());
     parsers.add(new BullseyeParser());
+    parsers.add(new GcovJsonParser());
+    parsers.add(new LlvmCovParser());
+    return parsers;
   }
 
   /**
@@ -70,82 +101,132 @@ public class CxxCoverageSensor extends CxxReportSensor {
    */
   @Override
   public void analyse(Project project, SensorContext context) {
+    // the reports of all kinds mostly refer to the same files
+    CxxPathResolver resolver = new CxxPathResolver(project, context, settings);
+
     List<File> reports = getReports(settings, project.getFileSystem().getBasedir().getPath(),
         REPORT_PATH_KEY, DEFAULT_REPORT_PATH);
     CxxUtils.LOG.debug("Parsing coverage reports");
-    Map<String, CoverageMeasuresBuilder> coverageMeasures = parseReports(reports);
-    saveMeasures(project, context, coverageMeasures, UNIT_TEST_COVERAGE);
+    Map<org.sonar.api.resources.File, FileCoverage> coverageMeasures = parseReports(resolver, reports);
+    saveMeasures(context, coverageMeasures, UNIT_TEST_COVERAGE);
 
     CxxUtils.LOG.debug("Parsing integration test coverage reports");
     List<File> itReports = getReports(settings, project.getFileSystem().getBasedir().getPath(),
         IT_REPORT_PATH_KEY, IT_DEFAULT_REPORT_PATH);
-    Map<String, CoverageMeasuresBuilder> itCoverageMeasures = parseReports(itReports);
-    saveMeasures(project, context, itCoverageMeasures, IT_TEST_COVERAGE);
+    Map<org.sonar.api.resources.File, FileCoverage> itCoverageMeasures = parseReports(resolver, itReports);
+    saveMeasures(context, itCoverageMeasures, IT_TEST_COVERAGE);
 
     CxxUtils.LOG.debug("Parsing overall test coverage reports");
     List<File> overallReports = getReports(settings, project.getFileSystem().getBasedir().getPath(),
         OVERALL_REPORT_PATH_KEY, OVERALL_DEFAULT_REPORT_PATH);
-    Map<String, CoverageMeasuresBuilder> overallCoverageMeasures = parseReports(overallReports);
-    saveMeasures(project, context, overallCoverageMeasures, OVERALL_TEST_COVERAGE);
+    Map<org.sonar.api.resources.File, FileCoverage> overallCoverageMeasures = parseReports(resolver, overallReports);
+    saveMeasures(context, overallCoverageMeasures, OVERALL_TEST_COVERAGE);
+    resolver.logStatistics();
   }
 
-  private Map<String, CoverageMeasuresBuilder> parseReports(List<File> reports) {
-    Map<String, CoverageMeasuresBuilder> measuresTotal = new HashMap<String, CoverageMeasuresBuilder>();
-    Map<String, CoverageMeasuresBuilder> measuresForReport = new HashMap<String, CoverageMeasuresBuilder>();
+  /**
+   * Parses the given reports and merges their data: hits of the same line are summed
+   * up over all reports. The reports are parsed concurrently, merging happens in the
+   * order of the reports; at most twice as many reports as there are threads are
+   * parsed but not yet merged. The data is merged per resource, so that different
+   * spellings of the path of a file are combined.
+   */
+  private Map<org.sonar.api.resources.File, FileCoverage> parseReports(CxxPathResolver resolver, List<File> reports) {
+    Map<org.sonar.api.resources.File, FileCoverage> measuresTotal = new HashMap<org.sonar.api.resources.File, FileCoverage>();
+    if (reports.isEmpty()) {
+      return measuresTotal;
+    }
+
+    int threads = Math.max(1, Math.min(settings.getInt(CxxPlugin.REPORT_THREADS_KEY), reports.size()));
+    int window = 2 * threads;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Map<String, FileCoverage>>> results = new ArrayList<Future<Map<String, FileCoverage>>>();
+      for (int i = 0; i < reports.size(); i++) {
+        while (results.size() < reports.size() && results.size() < i + window) {
+          final File report = reports.get(results.size());
+          results.add(executor.submit(new Callable<Map<String, FileCoverage>>() {
+            public Map<String, FileCoverage> call() {
+              return parseReport(report);
+            }
+          }));
+        }
+
+        merge(resolver, measuresTotal, results.get(i).get());
+        results.set(i, null);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException("Interrupted while parsing coverage reports", e);
+    } catch (ExecutionException e) {
+      throw new SonarException("Cannot parse coverage reports", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return measuresTotal;
+  }
 
-    for (File report : reports) {
-      boolean parsed = false;
-      for (CoverageParser parser : parsers) {
+  private Map<String, FileCoverage> parseReport(File report) {
+    Map<String, FileCoverage> measuresForReport = new HashMap<String, FileCoverage>();
+    ReportHeader header = ReportHeader.read(report);
+    for (CoverageParser parser : parsers) {
+      if (parser.canParse(header)) {
         try {
-          measuresForReport.clear();
           parser.parseReport(report, measuresForReport);
-
-          if (!measuresForReport.isEmpty()) {
-            parsed = true;
-            measuresTotal.putAll(measuresForReport);
-            CxxUtils.LOG.info("Added report '{}' (parsed by: {}) to the coverage data", report, parser);
-            break;
-          }
+          CxxUtils.LOG.info("Added report '{}' (parsed by: {}) to the coverage data", report, parser);
         } catch (XMLStreamException e) {
-          CxxUtils.LOG.trace("Report {} cannot be parsed by {}", report, parser);
+          CxxUtils.LOG.error("Report {} cannot be parsed by {}: {}", new Object[] {report, parser, e.getMessage()});
+          measuresForReport.clear();
+        } catch (IOException e) {
+          CxxUtils.LOG.error("Report {} cannot be parsed by {}: {}", new Object[] {report, parser, e.getMessage()});
+          measuresForReport.clear();
         }
+        return measuresForReport;
       }
+    }
+
+    CxxUtils.LOG.error("Report {} cannot be parsed", report);
+    return measuresForReport;
+  }
 
-      if (!parsed) {
-        CxxUtils.LOG.error("Report {} cannot be parsed", report);
+  private static void merge(CxxPathResolver resolver, Map<org.sonar.api.resources.File, FileCoverage> measuresTotal,
+      Map<String, FileCoverage> measuresForReport) {
+    for (Map.Entry<String, FileCoverage> entry : measuresForReport.entrySet()) {
+      org.sonar.api.resources.File resource = resolver.resolve(entry.getKey());
+      if (resource == null) {
+        CxxUtils.LOG.debug("Cannot find the file '{}', ignoring coverage measures", entry.getKey());
+        continue;
+      }
+      FileCoverage fileCoverage = measuresTotal.get(resource);
+      if (fileCoverage == null) {
+        measuresTotal.put(resource, entry.getValue());
+      } else {
+        fileCoverage.add(entry.getValue());
       }
     }
-
-    return measuresTotal;
   }
 
-  private void saveMeasures(Project project,
-      SensorContext context,
-      Map<String, CoverageMeasuresBuilder> coverageMeasures,
+  private void saveMeasures(SensorContext context,
+      Map<org.sonar.api.resources.File, FileCoverage> coverageMeasures,
       int coveragetype) {
-    for (Map.Entry<String, CoverageMeasuresBuilder> entry : coverageMeasures.entrySet()) {
-      String filePath = entry.getKey();
-      org.sonar.api.resources.File cxxfile =
-          org.sonar.api.resources.File.fromIOFile(new File(filePath), project);
-      if (fileExist(context, cxxfile)) {
-        CxxUtils.LOG.debug("Saving coverage measures for file '{}'", filePath);
-        for (Measure measure : entry.getValue().createMeasures()) {
-          switch (coveragetype) {
-            case UNIT_TEST_COVERAGE:
-              break;
-            case IT_TEST_COVERAGE:
-              measure = convertToItMeasure(measure);
-              break;
-            case OVERALL_TEST_COVERAGE:
-              measure = convertForOverall(measure);
-              break;
-            default:
-              break;
-          }
-          context.saveMeasure(cxxfile, measure);
+    for (Map.Entry<org.sonar.api.resources.File, FileCoverage> entry : coverageMeasures.entrySet()) {
+      org.sonar.api.resources.File cxxfile = entry.getKey();
+      CxxUtils.LOG.debug("Saving coverage measures for file '{}'", cxxfile);
+      for (Measure measure : entry.getValue().createMeasures()) {
+        switch (coveragetype) {
+          case UNIT_TEST_COVERAGE:
+            break;
+          case IT_TEST_COVERAGE:
+            measure = convertToItMeasure(measure);
+            break;
+          case OVERALL_TEST_COVERAGE:
+            measure = convertForOverall(measure);
+            break;
+          default:
+            break;
         }
-      } else {
-        CxxUtils.LOG.debug("Cannot find the file '{}', ignoring coverage measures", filePath);
+        context.saveMeasure(cxxfile, measure);
       }
     }
   }
@@ -195,8 +276,4 @@ public class CxxCoverageSensor extends CxxReportSensor {
 
     return itMeasure;
   }
-
-  private boolean fileExist(SensorContext context, org.sonar.api.resources.File file) {
-    return context.getResource(file) != null;
-  }
 }
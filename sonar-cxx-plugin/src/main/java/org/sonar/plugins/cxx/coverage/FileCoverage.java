@@ -0,0 +1,223 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.coverage;
+
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.CoverageMeasuresBuilder;
+import org.sonar.api.measures.Measure;
+import org.sonar.api.measures.Metric;
+import org.sonar.api.measures.PersistenceMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coverage data of one source file, collected by the parsers and merged from
+ * any number of reports. Hits and conditions are kept in arrays indexed by
+ * line number; the arrays for conditions are only allocated for files having
+ * some. The data is converted to measures when it is saved.
+ */
+public final class FileCoverage {
+  private static final int NO_DATA = -1;
+  private static final int INITIAL_SIZE = 64;
+
+  private int[] hits = newArray(INITIAL_SIZE);
+  private int[] conditions;
+  private int[] coveredConditions;
+  private int maxLine = 0;
+
+  /**
+   * Sets the hits of a line, unless they have been set before. Parsers use this
+   * for the lines of a single report, like CoverageMeasuresBuilder.setHits().
+   */
+  public void setHits(int line, int lineHits) {
+    if (line < 0 || (line < hits.length && hits[line] != NO_DATA)) {
+      return;
+    }
+    ensureCapacity(line);
+    hits[line] = lineHits;
+  }
+
+  /**
+   * Sets the conditions of a line, unless they have been set before. Parsers use
+   * this for the lines of a single report, like CoverageMeasuresBuilder.setConditions().
+   */
+  public void setConditions(int line, int lineConditions, int lineCoveredConditions) {
+    if (line < 0 || lineConditions <= 0 || getConditions(line) > 0) {
+      return;
+    }
+    ensureCapacity(line);
+    ensureConditions();
+    conditions[line] = lineConditions;
+    coveredConditions[line] = lineCoveredConditions;
+  }
+
+  /**
+   * Adds the hits of a line. Hits of the same line from different reports
+   * are summed up, the sum stops at Integer.MAX_VALUE.
+   */
+  public void addHits(int line, int lineHits) {
+    if (line < 0) {
+      return;
+    }
+    ensureCapacity(line);
+    hits[line] = hits[line] == NO_DATA ? lineHits : (int) Math.min((long) hits[line] + lineHits, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Adds the conditions of a line. Reports only tell how many conditions have
+   * been covered, not which ones, so merging keeps the best coverage reported.
+   */
+  public void addConditions(int line, int lineConditions, int lineCoveredConditions) {
+    if (line < 0) {
+      return;
+    }
+    ensureCapacity(line);
+    ensureConditions();
+    conditions[line] = Math.max(conditions[line], lineConditions);
+    coveredConditions[line] = Math.min(conditions[line], Math.max(coveredConditions[line], lineCoveredConditions));
+  }
+
+  /**
+   * Adds the data collected for the same file from another report
+   */
+  void add(FileCoverage other) {
+    for (int line = 0; line <= other.maxLine; line++) {
+      if (other.hits[line] != NO_DATA) {
+        addHits(line, other.hits[line]);
+      }
+      if (other.getConditions(line) > 0) {
+        addConditions(line, other.conditions[line], other.coveredConditions[line]);
+      }
+    }
+  }
+
+  int getHits(int line) {
+    return line < hits.length ? hits[line] : NO_DATA;
+  }
+
+  int getConditions(int line) {
+    return conditions != null && line < conditions.length ? conditions[line] : NO_DATA;
+  }
+
+  int getCoveredConditions(int line) {
+    return coveredConditions != null && line < coveredConditions.length ? coveredConditions[line] : NO_DATA;
+  }
+
+  CoverageMeasuresBuilder toBuilder() {
+    CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
+    for (int line = 0; line <= maxLine; line++) {
+      if (hits[line] != NO_DATA) {
+        builder.setHits(line, hits[line]);
+      }
+      if (getConditions(line) > 0) {
+        builder.setConditions(line, conditions[line], coveredConditions[line]);
+      }
+    }
+    return builder;
+  }
+
+  /**
+   * Creates the measures CoverageMeasuresBuilder.createMeasures() would create for
+   * the same data, without building its maps of boxed line numbers
+   */
+  List<Measure> createMeasures() {
+    int linesToCover = 0;
+    int coveredLines = 0;
+    int totalConditions = 0;
+    int totalCoveredConditions = 0;
+    StringBuilder hitsData = new StringBuilder();
+    StringBuilder conditionsData = new StringBuilder();
+    StringBuilder coveredConditionsData = new StringBuilder();
+    for (int line = 0; line <= maxLine; line++) {
+      if (hits[line] != NO_DATA) {
+        linesToCover++;
+        if (hits[line] > 0) {
+          coveredLines++;
+        }
+        appendData(hitsData, line, hits[line]);
+      }
+      if (getConditions(line) > 0) {
+        totalConditions += conditions[line];
+        totalCoveredConditions += coveredConditions[line];
+        appendData(conditionsData, line, conditions[line]);
+        appendData(coveredConditionsData, line, coveredConditions[line]);
+      }
+    }
+
+    List<Measure> measures = new ArrayList<Measure>();
+    if (linesToCover > 0) {
+      measures.add(new Measure(CoreMetrics.LINES_TO_COVER, (double) linesToCover));
+      measures.add(new Measure(CoreMetrics.UNCOVERED_LINES, (double) (linesToCover - coveredLines)));
+      measures.add(dataMeasure(CoreMetrics.COVERAGE_LINE_HITS_DATA, hitsData));
+    }
+    if (totalConditions > 0) {
+      measures.add(new Measure(CoreMetrics.CONDITIONS_TO_COVER, (double) totalConditions));
+      measures.add(new Measure(CoreMetrics.UNCOVERED_CONDITIONS, (double) (totalConditions - totalCoveredConditions)));
+      measures.add(dataMeasure(CoreMetrics.CONDITIONS_BY_LINE, conditionsData));
+      measures.add(dataMeasure(CoreMetrics.COVERED_CONDITIONS_BY_LINE, coveredConditionsData));
+    }
+    return measures;
+  }
+
+  // the format of KeyValueFormat.format(Map)
+  private static void appendData(StringBuilder data, int line, int value) {
+    if (data.length() > 0) {
+      data.append(';');
+    }
+    data.append(line).append('=').append(value);
+  }
+
+  private static Measure dataMeasure(Metric metric, StringBuilder data) {
+    return new Measure(metric).setData(data.toString()).setPersistenceMode(PersistenceMode.DATABASE);
+  }
+
+  private void ensureCapacity(int line) {
+    if (line >= hits.length) {
+      int size = Math.max(line + 1, hits.length * 2);
+      hits = grow(hits, size);
+      if (conditions != null) {
+        conditions = grow(conditions, size);
+        coveredConditions = grow(coveredConditions, size);
+      }
+    }
+    maxLine = Math.max(maxLine, line);
+  }
+
+  private void ensureConditions() {
+    if (conditions == null) {
+      conditions = newArray(hits.length);
+      coveredConditions = newArray(hits.length);
+    }
+  }
+
+  private static int[] newArray(int size) {
+    int[] array = new int[size];
+    Arrays.fill(array, NO_DATA);
+    return array;
+  }
+
+  private static int[] grow(int[] array, int size) {
+    int[] grown = newArray(size);
+    System.arraycopy(array, 0, grown, 0, array.length);
+    return grown;
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.coverage;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.plugins.cxx.utils.CxxUtils;
+import org.sonar.plugins.cxx.utils.JsonReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads the JSON intermediate format written by 'gcov --json-format'
+ * (usually gzip compressed, one file per translation unit)
+ */
+public class GcovJsonParser implements CoverageParser {
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean canParse(ReportHeader header) {
+    return header.getRootElement() == null && header.getPrefix().contains("\"gcc_version\"");
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void parseReport(File report, Map<String, FileCoverage> coverageData)
+      throws IOException
+  {
+    CxxUtils.LOG.info("gcov - Parsing report '{}'", report);
+
+    // file names are relative to the working directory, which may follow the files
+    Map<String, FileCoverage> files = new LinkedHashMap<String, FileCoverage>();
+    String workingDirectory = null;
+
+    InputStreamReader input = new InputStreamReader(CxxUtils.openReport(report), "UTF-8");
+    try {
+      JsonReader reader = new JsonReader(input);
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("current_working_directory".equals(name)) {
+          workingDirectory = reader.nextString();
+        } else if ("files".equals(name)) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            collectFile(reader, files);
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+
+    for (Map.Entry<String, FileCoverage> entry : files.entrySet()) {
+      coverageData.put(resolve(workingDirectory, entry.getKey()), entry.getValue());
+    }
+  }
+
+  private static void collectFile(JsonReader reader, Map<String, FileCoverage> files) throws IOException {
+    String fileName = null;
+    FileCoverage fileCoverage = new FileCoverage();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("file".equals(name)) {
+        fileName = reader.nextString();
+      } else if ("lines".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          collectLine(reader, fileCoverage);
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (fileName != null) {
+      FileCoverage known = files.get(fileName);
+      if (known == null) {
+        files.put(fileName, fileCoverage);
+      } else {
+        known.add(fileCoverage);
+      }
+    }
+  }
+
+  private static void collectLine(JsonReader reader, FileCoverage fileCoverage) throws IOException {
+    int line = -1;
+    int count = 0;
+    int branches = 0;
+    int coveredBranches = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("line_number".equals(name)) {
+        line = reader.nextInt();
+      } else if ("count".equals(name)) {
+        count = reader.nextInt();
+      } else if ("branches".equals(name)) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          branches++;
+          if (branchCount(reader) > 0) {
+            coveredBranches++;
+          }
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    fileCoverage.addHits(line, count);
+    if (branches > 0) {
+      fileCoverage.addConditions(line, branches, coveredBranches);
+    }
+  }
+
+  private static long branchCount(JsonReader reader) throws IOException {
+    long count = 0;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("count".equals(reader.nextName())) {
+        count = reader.nextLong();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return count;
+  }
+
+  private static String resolve(String workingDirectory, String fileName) {
+    if (workingDirectory == null || new File(fileName).isAbsolute()) {
+      return fileName;
+    }
+    return new File(workingDirectory, fileName).getPath();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.coverage;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.plugins.cxx.utils.CxxUtils;
+import org.sonar.plugins.cxx.utils.JsonReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the JSON format written by 'llvm-cov export'. Line hits are derived from
+ * the coverage segments the same way 'llvm-cov show' does it.
+ */
+public class LlvmCovParser implements CoverageParser {
+
+  private static final Pattern EXPORT_START = Pattern.compile(
+      "^\\s*\\{\\s*\"data\"\\s*:\\s*\\[\\s*\\{\\s*\"(files|functions|totals)\"");
+
+  /**
+   * {@inheritDoc}
+   */
+  public boolean canParse(ReportHeader header) {
+    return header.getRootElement() == null
+      && (header.getPrefix().contains("\"llvm.coverage.json.export\"")
+      || EXPORT_START.matcher(header.getPrefix()).find());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  public void parseReport(File report, Map<String, FileCoverage> coverageData)
+      throws IOException
+  {
+    CxxUtils.LOG.info("llvm-cov - Parsing report '{}'", report);
+
+    InputStreamReader input = new InputStreamReader(CxxUtils.openReport(report), "UTF-8");
+    try {
+      JsonReader reader = new JsonReader(input);
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("data".equals(reader.nextName())) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            collectExport(reader, coverageData);
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static void collectExport(JsonReader reader, Map<String, FileCoverage> coverageData)
+      throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("files".equals(reader.nextName())) {
+        reader.beginArray();
+        while (reader.hasNext()) {
+          collectFile(reader, coverageData);
+        }
+        reader.endArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  private static void collectFile(JsonReader reader, Map<String, FileCoverage> coverageData)
+      throws IOException {
+    String fileName = null;
+    FileCoverage fileCoverage = new FileCoverage();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if ("filename".equals(name)) {
+        fileName = reader.nextString();
+      } else if ("segments".equals(name)) {
+        collectSegments(reader, fileCoverage);
+      } else if ("branches".equals(name)) {
+        collectBranches(reader, fileCoverage);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (fileName != null) {
+      coverageData.put(fileName, fileCoverage);
+    }
+  }
+
+  /**
+   * Segments are arrays [line, column, count, hasCount, isRegionEntry, isGapRegion]
+   * sorted by position
+   */
+  private static void collectSegments(JsonReader reader, FileCoverage fileCoverage) throws IOException {
+    LineStats stats = new LineStats(fileCoverage);
+    reader.beginArray();
+    while (reader.hasNext()) {
+      reader.beginArray();
+      int line = reader.nextInt();
+      reader.nextInt(); // column
+      long count = reader.nextLong();
+      boolean hasCount = reader.nextBoolean();
+      boolean isRegionEntry = reader.nextBoolean();
+      boolean isGapRegion = false;
+      if (reader.hasNext()) {
+        isGapRegion = reader.nextBoolean();
+      }
+      while (reader.hasNext()) {
+        reader.skipValue();
+      }
+      reader.endArray();
+      stats.add(line, count, hasCount, isRegionEntry, isGapRegion);
+    }
+    reader.endArray();
+    stats.finish();
+  }
+
+  /**
+   * Branches are arrays [lineStart, columnStart, lineEnd, columnEnd, trueCount, falseCount, ...],
+   * each one counts as two conditions
+   */
+  private static void collectBranches(JsonReader reader, FileCoverage fileCoverage) throws IOException {
+    Map<Integer, int[]> conditionsByLine = new TreeMap<Integer, int[]>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      reader.beginArray();
+      int line = reader.nextInt();
+      reader.nextInt(); // column start
+      reader.nextInt(); // line end
+      reader.nextInt(); // column end
+      long trueCount = reader.nextLong();
+      long falseCount = reader.nextLong();
+      while (reader.hasNext()) {
+        reader.skipValue();
+      }
+      reader.endArray();
+
+      int[] conditions = conditionsByLine.get(line);
+      if (conditions == null) {
+        conditions = new int[2];
+        conditionsByLine.put(line, conditions);
+      }
+      conditions[0] += 2;
+      conditions[1] += (trueCount > 0 ? 1 : 0) + (falseCount > 0 ? 1 : 0);
+    }
+    reader.endArray();
+
+    for (Map.Entry<Integer, int[]> entry : conditionsByLine.entrySet()) {
+      fileCoverage.addConditions(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+    }
+  }
+
+  /**
+   * Computes the execution count of every line from the segments starting on it and
+   * the segment wrapping it, i.e. the last segment of a previous line
+   */
+  private static final class LineStats {
+    private final FileCoverage fileCoverage;
+
+    private int line = -1;
+    private boolean hasWrapped;
+    private long wrappedCount;
+    private boolean wrappedHasCount;
+
+    // segments of the current line
+    private int regionStarts;
+    private long maxRegionCount;
+    private boolean startsSkippedRegion;
+    private boolean hasSegments;
+    private long lastCount;
+    private boolean lastHasCount;
+
+    LineStats(FileCoverage fileCoverage) {
+      this.fileCoverage = fileCoverage;
+    }
+
+    void add(int segmentLine, long count, boolean hasCount, boolean isRegionEntry, boolean isGapRegion) {
+      if (segmentLine != line) {
+        if (line >= 0) {
+          finishLine();
+          // lines without segments are covered by the last segment of this line
+          for (int l = line + 1; l < segmentLine; l++) {
+            line = l;
+            finishLine();
+          }
+        }
+        line = segmentLine;
+      }
+
+      if (!hasSegments) {
+        startsSkippedRegion = !hasCount && isRegionEntry;
+      }
+      hasSegments = true;
+      if (!isGapRegion && hasCount && isRegionEntry) {
+        regionStarts++;
+        maxRegionCount = Math.max(maxRegionCount, count);
+      }
+      lastCount = count;
+      lastHasCount = hasCount;
+    }
+
+    void finish() {
+      if (line >= 0) {
+        finishLine();
+      }
+    }
+
+    private void finishLine() {
+      boolean mapped = !startsSkippedRegion && ((hasWrapped && wrappedHasCount) || regionStarts > 0);
+      if (mapped) {
+        long count = hasWrapped ? wrappedCount : 0;
+        if (regionStarts > 0) {
+          count = Math.max(count, maxRegionCount);
+        }
+        fileCoverage.addHits(line, (int) Math.min(count, Integer.MAX_VALUE));
+      }
+
+      if (hasSegments) {
+        hasWrapped = true;
+        wrappedCount = lastCount;
+        wrappedHasCount = lastHasCount;
+      }
+      regionStarts = 0;
+      maxRegionCount = 0;
+      startsSkippedRegion = false;
+      hasSegments = false;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.coverage;
+
+import org.apache.commons.io.IOUtils;
+import org.sonar.plugins.cxx.utils.CxxUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The beginning of a report, used by the parsers to detect whether they
+ * understand a report without parsing it completely
+ */
+public final class ReportHeader {
+  private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+  private static final int PREFIX_SIZE = 1024;
+
+  private final String rootElement;
+  private final String prefix;
+
+  ReportHeader(String rootElement, String prefix) {
+    this.rootElement = rootElement;
+    this.prefix = prefix;
+  }
+
+  /**
+   * Reads the beginning of the given report: the root element of XML documents and
+   * the first characters of any other format. Compressed reports are inflated.
+   */
+  public static ReportHeader read(File report) {
+    InputStream input = null;
+    String prefix = "";
+    String rootElement = null;
+    try {
+      input = CxxUtils.openReport(report);
+      input.mark(PREFIX_SIZE);
+      byte[] bytes = new byte[PREFIX_SIZE];
+      int length = 0;
+      int count = 0;
+      while (length < bytes.length && (count = input.read(bytes, length, bytes.length - length)) > 0) {
+        length += count;
+      }
+      prefix = decode(bytes, length);
+      input.reset();
+      if (prefix.trim().startsWith("<")) {
+        rootElement = readRootElement(report, input);
+      }
+    } catch (IOException e) {
+      CxxUtils.LOG.debug("Cannot read report {}: {}", report, e.getMessage());
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+    return new ReportHeader(rootElement, prefix);
+  }
+
+  /**
+   * Decodes the prefix in the encoding given by its byte order mark or, for XML
+   * documents without one, by the encoding of the leading '<'; UTF-8 otherwise.
+   * The XML parser detects the encoding itself.
+   */
+  private static String decode(byte[] bytes, int length) throws IOException {
+    int b0 = length > 0 ? bytes[0] & 0xFF : -1;
+    int b1 = length > 1 ? bytes[1] & 0xFF : -1;
+    if (b0 == 0xEF && b1 == 0xBB && length > 2 && (bytes[2] & 0xFF) == 0xBF) {
+      return new String(bytes, 3, length - 3, "UTF-8");
+    } else if (b0 == 0xFE && b1 == 0xFF) {
+      return new String(bytes, 2, length - 2, "UTF-16BE");
+    } else if (b0 == 0xFF && b1 == 0xFE) {
+      return new String(bytes, 2, length - 2, "UTF-16LE");
+    } else if (b0 == 0 && b1 == '<') {
+      return new String(bytes, 0, length, "UTF-16BE");
+    } else if (b0 == '<' && b1 == 0) {
+      return new String(bytes, 0, length, "UTF-16LE");
+    }
+    return new String(bytes, 0, length, "UTF-8");
+  }
+
+  private static String readRootElement(File report, InputStream input) {
+    XMLStreamReader reader = null;
+    try {
+      reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          return reader.getLocalName();
+        }
+      }
+    } catch (XMLStreamException e) {
+      CxxUtils.LOG.debug("Report {} is not a XML document: {}", report, e.getMessage());
+    } finally {
+      close(reader);
+    }
+    return null;
+  }
+
+  /**
+   * @return the local name of the root element or null if the report isn't a XML document
+   */
+  public String getRootElement() {
+    return rootElement;
+  }
+
+  /**
+   * @return the first characters of the (inflated) report
+   */
+  public String getPrefix() {
+    return prefix;
+  }
+
+  private static void close(XMLStreamReader reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (XMLStreamException e) {
+        // ignore
+      }
+    }
+  }
+
+  private static XMLInputFactory createXmlInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // the DTDs referenced by some reports must not be fetched
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    return factory;
+  }
+}
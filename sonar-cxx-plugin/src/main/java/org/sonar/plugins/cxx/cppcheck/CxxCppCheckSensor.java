@@ -19,19 +19,13 @@
  */
 package org.sonar.plugins.cxx.cppcheck;
 
-import org.apache.commons.lang.StringUtils;
-import org.codehaus.staxmate.in.SMHierarchicCursor;
-import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.utils.StaxParser;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
-import org.sonar.plugins.cxx.utils.CxxUtils;
-
-import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
 
@@ -44,6 +38,8 @@ import java.io.File;
 public class CxxCppCheckSensor extends CxxReportSensor {
   public static final String REPORT_PATH_KEY = "sonar.cxx.cppcheck.reportPath";
   private static final String DEFAULT_REPORT_PATH = "cppcheck-reports/cppcheck-result-*.xml";
+  private static final CxxIssueReportFormat FORMAT = CxxIssueReportFormat.of("CppCheck")
+      .issues("error", "file", "line", "id", "msg");
   private RulesProfile profile;
 
   /**
@@ -74,39 +70,15 @@ public class CxxCppCheckSensor extends CxxReportSensor {
     return DEFAULT_REPORT_PATH;
   }
 
+  @Override
+  protected boolean canProcessReportsInParallel() {
+    return true;
+  }
+
   @Override
   protected void processReport(final Project project, final SensorContext context, File report)
       throws javax.xml.stream.XMLStreamException
   {
-    StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
-      /**
-       * {@inheritDoc}
-       */
-      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
-        rootCursor.advance(); // results
-
-        SMInputCursor errorCursor = rootCursor.childElementCursor("error"); // error
-        while (errorCursor.getNext() != null) {
-          String file = errorCursor.getAttrValue("file");
-          String line = errorCursor.getAttrValue("line");
-          String id = errorCursor.getAttrValue("id");
-          String msg = errorCursor.getAttrValue("msg");
-
-          if (isInputValid(file, line, id, msg)) {
-            saveViolation(project, context, CxxCppCheckRuleRepository.KEY,
-                file, Integer.parseInt(line), id, msg);
-          } else {
-            CxxUtils.LOG.warn("CppCheck warning: {}", msg);
-          }
-        }
-      }
-
-      private boolean isInputValid(String file, String line, String id, String msg) {
-        return !StringUtils.isEmpty(file) && !StringUtils.isEmpty(line)
-          && !StringUtils.isEmpty(id) && !StringUtils.isEmpty(msg);
-      }
-    });
-
-    parser.parse(report);
+    processIssueReport(project, context, report, FORMAT, CxxCppCheckRuleRepository.KEY);
   }
 }
@@ -19,18 +19,14 @@
  */
 package org.sonar.plugins.cxx.externalrules;
 
-import org.codehaus.staxmate.in.SMHierarchicCursor;
-import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.utils.StaxParser;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
 
-import javax.xml.stream.XMLStreamException;
-
 import java.io.File;
 
 /**
@@ -42,6 +38,9 @@ public class CxxExternalRulesSensor extends CxxReportSensor {
 
   public static final String REPORT_PATH_KEY = "sonar.cxx.externalrules.reportPath";
   private static final String DEFAULT_REPORT_PATH = "externalrules-reports/externalrules-result-*.xml";
+  private static final CxxIssueReportFormat FORMAT = CxxIssueReportFormat.of("External rules")
+      .issues("error", "file", "line", "id", "msg")
+      .strict();
   private RulesProfile profile;
 
   /**
@@ -72,27 +71,14 @@ public class CxxExternalRulesSensor extends CxxReportSensor {
   }
 
   @Override
-  protected void processReport(final Project project, final SensorContext context, File report) throws javax.xml.stream.XMLStreamException {
-    StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
-
-      /**
-       * {@inheritDoc}
-       */
-      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
-        rootCursor.advance();
-
-        SMInputCursor errorCursor = rootCursor.childElementCursor("error");
-        while (errorCursor.getNext() != null) {
-          String file = errorCursor.getAttrValue("file");
-          String line = errorCursor.getAttrValue("line");
-          String id = errorCursor.getAttrValue("id");
-          String msg = errorCursor.getAttrValue("msg");
-
-          saveViolation(project, context, CxxExternalRuleRepository.REPOSITORY_KEY, file, Integer.parseInt(line), id, msg);
-        }
-      }
-    });
+  protected boolean canProcessReportsInParallel() {
+    return true;
+  }
 
-    parser.parse(report);
+  @Override
+  protected void processReport(final Project project, final SensorContext context, File report)
+      throws javax.xml.stream.XMLStreamException
+  {
+    processIssueReport(project, context, report, FORMAT, CxxExternalRuleRepository.REPOSITORY_KEY);
   }
 }
@@ -19,19 +19,13 @@
  */
 package org.sonar.plugins.cxx.pclint;
 
-import org.apache.commons.lang.StringUtils;
-import org.codehaus.staxmate.in.SMHierarchicCursor;
-import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.utils.StaxParser;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
-import org.sonar.plugins.cxx.utils.CxxUtils;
-
-import javax.xml.stream.XMLStreamException;
 
 import java.io.File;
 
@@ -43,6 +37,8 @@ import java.io.File;
 public class CxxPCLintSensor extends CxxReportSensor {
   public static final String REPORT_PATH_KEY = "sonar.cxx.pclint.reportPath";
   private static final String DEFAULT_REPORT_PATH = "pclint-reports/pclint-result-*.xml";
+  private static final CxxIssueReportFormat FORMAT = CxxIssueReportFormat.of("PCLint")
+      .issues("issue", "file", "line", "number", "desc");
   private RulesProfile profile;
 
   /**
@@ -72,47 +68,15 @@ public class CxxPCLintSensor extends CxxReportSensor {
     return DEFAULT_REPORT_PATH;
   }
 
+  @Override
+  protected boolean canProcessReportsInParallel() {
+    return true;
+  }
+
   @Override
   protected void processReport(final Project project, final SensorContext context, File report)
       throws javax.xml.stream.XMLStreamException
   {
-    StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
-      /**
-       * {@inheritDoc}
-       */
-
-      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
-        rootCursor.advance(); // results
-
-        SMInputCursor errorCursor = rootCursor.childElementCursor("issue"); // error
-
-        while (errorCursor.getNext() != null) {
-
-          String file = errorCursor.getAttrValue("file");
-          String line = errorCursor.getAttrValue("line");
-          String id = errorCursor.getAttrValue("number");
-          String msg = errorCursor.getAttrValue("desc");
-          try {
-            if (isInputValid(file, line, id, msg)) {
-              saveViolation(project, context, CxxPCLintRuleRepository.KEY,
-                  file, Integer.parseInt(line), id, msg);
-            } else {
-              CxxUtils.LOG.warn("PCLint warning: {}", msg);
-            }
-          } catch (java.lang.NullPointerException e) {
-            // avoid crash of the pclint plug-in e.g. mixed-up file name - the output shows some details
-            CxxUtils.LOG.error("processReport Exception: " + errorCursor.getQName() + " - not processed by StaxParser '{}'", e.toString());
-            CxxUtils.LOG.error("last known values: file=" + file + " line=" + line + " number=" + id + " Desc=" + msg);
-          }
-        }
-      }
-
-      private boolean isInputValid(String file, String line, String id, String msg) {
-        return !StringUtils.isEmpty(file) && !StringUtils.isEmpty(line)
-          && !StringUtils.isEmpty(id) && !StringUtils.isEmpty(msg);
-      }
-    });
-
-    parser.parse(report);
+    processIssueReport(project, context, report, FORMAT, CxxPCLintRuleRepository.KEY);
   }
 }
@@ -19,17 +19,21 @@
  */
 package org.sonar.plugins.cxx.rats;
 
-import org.jdom.Element;
-import org.jdom.input.SAXBuilder;
+import org.codehaus.staxmate.in.SMHierarchicCursor;
+import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.utils.StaxParser;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
 import org.sonar.plugins.cxx.utils.CxxUtils;
 
+import javax.xml.stream.XMLStreamException;
+
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -69,42 +73,106 @@ public final class CxxRatsSensor extends CxxReportSensor {
   }
 
   @Override
-  protected void processReport(Project project, SensorContext context, File report)
-      throws org.jdom.JDOMException, java.io.IOException
+  protected boolean canProcessReportsInParallel() {
+    return true;
+  }
+
+  @Override
+  protected void processReport(final Project project, final SensorContext context, File report)
+      throws javax.xml.stream.XMLStreamException
   {
-    try
-    {
-      SAXBuilder builder = new SAXBuilder(false);
-      Element root = builder.build(report).getRootElement();
-
-      List<Element> vulnerabilities = root.getChildren("vulnerability");
-      for (Element vulnerability : vulnerabilities) {
-        String type = getVulnerabilityType(vulnerability.getChild("type"));
-        String message = vulnerability.getChild("message").getTextTrim();
-
-        List<Element> files = vulnerability.getChildren("file");
-
-        for (Element file : files) {
-          String fileName = file.getChild("name").getTextTrim();
-
-          List<Element> lines = file.getChildren("line");
-          for (Element lineElem : lines) {
-            int line = Integer.parseInt(lineElem.getTextTrim());
-            saveViolation(project, context, CxxRatsRuleRepository.KEY,
-                fileName, line, type, message);
-          }
+    final List<RatsViolation> violations = new ArrayList<RatsViolation>();
+    StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
+      /**
+       * {@inheritDoc}
+       */
+      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
+        rootCursor.advance(); // rats_output
+
+        SMInputCursor vulnerabilityCursor = rootCursor.childElementCursor("vulnerability");
+        while (vulnerabilityCursor.getNext() != null) {
+          collectVulnerability(vulnerabilityCursor.childElementCursor(), violations);
         }
       }
-    } catch (org.jdom.input.JDOMParseException e) {
+    });
+
+    try {
+      CxxUtils.parseReport(parser, report);
+    } catch (XMLStreamException e) {
       // when RATS fails the XML file might be incomplete
       CxxUtils.LOG.error("Ignore incomplete XML output from RATS '{}'", e.toString());
+      return;
+    }
+
+    // saved only when the whole report has been read, like it was done when the
+    // report was loaded into a DOM tree
+    for (RatsViolation violation : violations) {
+      saveViolation(project, context, CxxRatsRuleRepository.KEY,
+          violation.file, violation.line, violation.type, violation.message);
     }
   }
 
-  private String getVulnerabilityType(Element child) {
-    if (child != null) {
-      return child.getTextTrim();
+  private static void collectVulnerability(SMInputCursor childCursor, List<RatsViolation> violations)
+      throws XMLStreamException {
+    String type = null;
+    String message = null;
+    List<String> fileNames = new ArrayList<String>();
+    List<Integer> lines = new ArrayList<Integer>();
+
+    while (childCursor.getNext() != null) {
+      String name = childCursor.getLocalName();
+      if ("type".equals(name)) {
+        if (type == null) {
+          type = childCursor.collectDescendantText(false).trim();
+        }
+      } else if ("message".equals(name)) {
+        if (message == null) {
+          message = childCursor.collectDescendantText(false).trim();
+        }
+      } else if ("file".equals(name)) {
+        collectFile(childCursor.childElementCursor(), fileNames, lines);
+      }
+    }
+
+    if (type == null) {
+      type = MISSING_RATS_TYPE;
+    }
+    for (int i = 0; i < fileNames.size(); i++) {
+      violations.add(new RatsViolation(fileNames.get(i), lines.get(i), type, message));
+    }
+  }
+
+  private static void collectFile(SMInputCursor childCursor, List<String> fileNames, List<Integer> lines)
+      throws XMLStreamException {
+    String fileName = null;
+    List<Integer> fileLines = new ArrayList<Integer>();
+    while (childCursor.getNext() != null) {
+      String name = childCursor.getLocalName();
+      if ("name".equals(name)) {
+        if (fileName == null) {
+          fileName = childCursor.collectDescendantText(false).trim();
+        }
+      } else if ("line".equals(name)) {
+        fileLines.add(Integer.parseInt(childCursor.collectDescendantText(false).trim()));
+      }
+    }
+    for (Integer line : fileLines) {
+      fileNames.add(fileName);
+      lines.add(line);
+    }
+  }
+
+  private static class RatsViolation {
+    private final String file;
+    private final int line;
+    private final String type;
+    private final String message;
+
+    RatsViolation(String file, int line, String type, String message) {
+      this.file = file;
+      this.line = line;
+      this.type = type;
+      this.message = message;
     }
-    return MISSING_RATS_TYPE;
   }
 }
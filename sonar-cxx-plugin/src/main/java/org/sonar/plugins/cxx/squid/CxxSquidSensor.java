@@ -22,6 +22,8 @@ package org.sonar.plugins.cxx.squid;
 import com.google.common.collect.Lists;
 import com.sonar.sslr.squid.AstScanner;
 import com.sonar.sslr.squid.SquidAstVisitor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.checks.AnnotationCheckFactory;
@@ -35,11 +37,14 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.rules.Violation;
 import org.sonar.cxx.CxxAstScanner;
 import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxScanStatistics;
 import org.sonar.cxx.api.CxxGrammar;
 import org.sonar.cxx.api.CxxMetric;
 import org.sonar.cxx.checks.CheckList;
+import org.sonar.plugins.cxx.CxxCpdMapping;
 import org.sonar.plugins.cxx.CxxLanguage;
 import org.sonar.plugins.cxx.CxxPlugin;
+import org.sonar.plugins.cxx.utils.CxxUtils;
 import org.sonar.squid.api.CheckMessage;
 import org.sonar.squid.api.SourceCode;
 import org.sonar.squid.api.SourceFile;
@@ -48,6 +53,7 @@ import org.sonar.squid.indexer.QueryByParent;
 import org.sonar.squid.indexer.QueryByType;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
@@ -58,6 +64,7 @@ import java.util.Locale;
 public final class CxxSquidSensor implements Sensor {
   private static final Number[] FUNCTIONS_DISTRIB_BOTTOM_LIMITS = {1, 2, 4, 6, 8, 10, 12, 20, 30};
   private static final Number[] FILES_DISTRIB_BOTTOM_LIMITS = {0, 5, 10, 20, 30, 60, 90};
+  private static final int STATISTICS_TOP_ENTRIES = 10;
 
   private final AnnotationCheckFactory annotationCheckFactory;
   
@@ -87,11 +94,55 @@ public final class CxxSquidSensor implements Sensor {
     
     Collection<SquidAstVisitor<CxxGrammar>> squidChecks = annotationCheckFactory.getChecks();
     List<SquidAstVisitor<CxxGrammar>> visitors = Lists.newArrayList(squidChecks);
-    this.scanner = CxxAstScanner.create(createConfiguration(project, conf),
-                                        visitors.toArray(new SquidAstVisitor[visitors.size()]));
-    scanner.scanFiles(InputFileUtils.toFiles(project.getFileSystem().mainFiles(CxxLanguage.KEY)));
-    Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
-    save(squidSourceFiles);
+    CxxConfiguration cxxConf = createConfiguration(project, conf);
+    String statisticsPath = conf.getString(CxxPlugin.SCAN_STATISTICS_PATH_KEY);
+    if (conf.getBoolean(CxxPlugin.SCAN_STATISTICS_KEY) || StringUtils.isNotEmpty(statisticsPath)) {
+      cxxConf.setStatistics(new CxxScanStatistics());
+    }
+    if (!CxxCpdMapping.isSkipped(conf)) {
+      // the copy-paste detection reuses the tokens instead of lexing the files again
+      cxxConf.setTokenStore(CxxCpdMapping.tokenStore(conf));
+    }
+    List<File> files = InputFileUtils.toFiles(project.getFileSystem().mainFiles(CxxLanguage.KEY));
+
+    // Every batch gets its own scanner, so that the source code index of a batch
+    // can be garbage collected as soon as its results have been saved
+    for (List<File> batch : partition(files, conf.getInt(CxxPlugin.SCAN_BATCH_SIZE_KEY))) {
+      this.scanner = CxxAstScanner.create(cxxConf, visitors.toArray(new SquidAstVisitor[visitors.size()]));
+      scanner.scanFiles(batch);
+      Collection<SourceCode> squidSourceFiles = scanner.getIndex().search(new QueryByType(SourceFile.class));
+      save(squidSourceFiles);
+    }
+    this.scanner = null;
+
+    if (cxxConf.getStatistics() != null) {
+      reportStatistics(cxxConf.getStatistics(), statisticsPath);
+    }
+  }
+
+  private void reportStatistics(CxxScanStatistics statistics, String path) {
+    CxxUtils.LOG.info("Scan statistics:\n{}", statistics.toTable(STATISTICS_TOP_ENTRIES));
+    if (StringUtils.isNotEmpty(path)) {
+      File file = new File(path);
+      if (!file.isAbsolute()) {
+        file = new File(project.getFileSystem().getBasedir(), path);
+      }
+      try {
+        FileUtils.writeStringToFile(file, statistics.toJson(), "UTF-8");
+        CxxUtils.LOG.info("Scan statistics written to '{}'", file);
+      } catch (IOException e) {
+        CxxUtils.LOG.warn("Cannot write scan statistics to '{}': {}", file, e.getMessage());
+      }
+    }
+  }
+
+  private List<List<File>> partition(List<File> files, int batchSize) {
+    if (batchSize <= 0 || batchSize >= files.size()) {
+      List<List<File>> batches = Lists.newArrayList();
+      batches.add(files);
+      return batches;
+    }
+    return Lists.partition(files, batchSize);
   }
 
   private CxxConfiguration createConfiguration(Project project, Settings conf) {
@@ -125,6 +176,12 @@ public final class CxxSquidSensor implements Sensor {
     context.saveMeasure(sonarFile, CoreMetrics.COMPLEXITY, squidFile.getDouble(CxxMetric.COMPLEXITY));
     context.saveMeasure(sonarFile, CoreMetrics.COMMENT_BLANK_LINES, squidFile.getDouble(CxxMetric.COMMENT_BLANK_LINES));
     context.saveMeasure(sonarFile, CoreMetrics.COMMENT_LINES, squidFile.getDouble(CxxMetric.COMMENT_LINES));
+    if (squidFile.getInt(CxxMetric.RFC) > 0) {
+      context.saveMeasure(sonarFile, CoreMetrics.RFC, squidFile.getDouble(CxxMetric.RFC));
+    }
+    if (squidFile.getInt(CxxMetric.CLASSES) > 0) {
+      context.saveMeasure(sonarFile, CoreMetrics.LCOM4, squidFile.getDouble(CxxMetric.LCOM4));
+    }
   }
 
   private void saveFunctionsComplexityDistribution(org.sonar.api.resources.File sonarFile, SourceFile squidFile) {
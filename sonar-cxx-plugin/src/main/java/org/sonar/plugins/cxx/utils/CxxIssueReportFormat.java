@@ -0,0 +1,175 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.utils;
+
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.staxmate.in.SMHierarchicCursor;
+import org.codehaus.staxmate.in.SMInputCursor;
+import org.sonar.api.utils.StaxParser;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.io.File;
+
+/**
+ * Describes where an XML report of a static analysis tool keeps its issues:
+ * the element of an issue, optionally nested in an element per file, and the
+ * attributes carrying file, line, rule id and message. All such reports are
+ * read by the same streaming loop, so supporting another tool of this kind
+ * takes a new format but no parsing code.
+ *
+ * A format is configured once and may then be used concurrently.
+ */
+public final class CxxIssueReportFormat {
+  private final String toolName;
+  private String fileElement;
+  private String issueElement;
+  private String fileAttribute;
+  private String lineAttribute;
+  private String idAttribute;
+  private String messageAttribute;
+  private String ignoredFile;
+  private boolean strict;
+
+  /**
+   * Receives the issues of a report as they are read
+   */
+  public interface IssueHandler {
+    void handleIssue(String file, int line, String id, String msg);
+  }
+
+  private CxxIssueReportFormat(String toolName) {
+    this.toolName = toolName;
+  }
+
+  /**
+   * Starts the format of the given tool, the name is used for logging
+   */
+  public static CxxIssueReportFormat of(String toolName) {
+    return new CxxIssueReportFormat(toolName);
+  }
+
+  /**
+   * Issues are children of the root element with the given name, which carry
+   * all the information in their attributes
+   */
+  public CxxIssueReportFormat issues(String element, String file, String line, String id, String msg) {
+    this.issueElement = element;
+    this.fileAttribute = file;
+    this.lineAttribute = line;
+    this.idAttribute = id;
+    this.messageAttribute = msg;
+    return this;
+  }
+
+  /**
+   * Issues are grouped in children of the root element with the given name,
+   * one per file, the file being given by the attribute
+   */
+  public CxxIssueReportFormat groupedByFile(String element, String file) {
+    this.fileElement = element;
+    this.fileAttribute = file;
+    return this;
+  }
+
+  /**
+   * Issues are children of the file elements and carry line, rule id and
+   * message in the given attributes
+   */
+  public CxxIssueReportFormat issues(String element, String line, String id, String msg) {
+    this.issueElement = element;
+    this.lineAttribute = line;
+    this.idAttribute = id;
+    this.messageAttribute = msg;
+    return this;
+  }
+
+  /**
+   * Issues of a file with the given name are skipped. Tools use this to report
+   * problems of their own.
+   */
+  public CxxIssueReportFormat ignoringFile(String name) {
+    this.ignoredFile = name;
+    return this;
+  }
+
+  /**
+   * An issue without file or numeric line fails the report, instead of being
+   * logged and skipped. Issues lacking only rule id or message are still skipped.
+   */
+  public CxxIssueReportFormat strict() {
+    this.strict = true;
+    return this;
+  }
+
+  /**
+   * Reads the given report, passing every complete issue to the handler
+   */
+  public void parse(File report, final IssueHandler handler) throws XMLStreamException {
+    CxxUtils.parseReport(new StaxParser(new StaxParser.XmlStreamHandler() {
+      /**
+       * {@inheritDoc}
+       */
+      public void stream(SMHierarchicCursor rootCursor) throws XMLStreamException {
+        rootCursor.advance();
+        if (fileElement == null) {
+          readIssues(rootCursor, null, handler);
+        } else {
+          SMInputCursor fileCursor = rootCursor.childElementCursor(fileElement);
+          while (fileCursor.getNext() != null) {
+            readIssues(fileCursor, fileCursor.getAttrValue(fileAttribute), handler);
+          }
+        }
+      }
+    }), report);
+  }
+
+  private void readIssues(SMInputCursor parent, String groupFile, IssueHandler handler)
+      throws XMLStreamException
+  {
+    SMInputCursor issueCursor = parent.childElementCursor(issueElement);
+    while (issueCursor.getNext() != null) {
+      String file = groupFile == null ? issueCursor.getAttrValue(fileAttribute) : groupFile;
+      String line = issueCursor.getAttrValue(lineAttribute);
+      String id = issueCursor.getAttrValue(idAttribute);
+      String msg = issueCursor.getAttrValue(messageAttribute);
+
+      if (ignoredFile != null && ignoredFile.equals(file)) {
+        CxxUtils.LOG.debug("{} error in line '{}': '{}'", new Object[] {toolName, line, msg});
+      } else if (isInputValid(file, line, id, msg)) {
+        handler.handleIssue(file, Integer.parseInt(line), id, msg);
+      } else if (strict && !isLocationValid(file, line)) {
+        issueCursor.throwStreamException(toolName + " issue has no location: we require both '"
+          + StringUtils.join(new String[] {fileAttribute, lineAttribute}, "', '")
+          + "'");
+      } else {
+        CxxUtils.LOG.warn("{} warning: {}", toolName, msg);
+      }
+    }
+  }
+
+  private static boolean isInputValid(String file, String line, String id, String msg) {
+    return isLocationValid(file, line) && !StringUtils.isEmpty(id) && !StringUtils.isEmpty(msg);
+  }
+
+  private static boolean isLocationValid(String file, String line) {
+    return !StringUtils.isEmpty(file) && StringUtils.isNumeric(line) && !StringUtils.isEmpty(line);
+  }
+}
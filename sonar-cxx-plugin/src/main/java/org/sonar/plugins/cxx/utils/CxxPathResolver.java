@@ -0,0 +1,206 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.utils;
+
+import org.apache.commons.io.FilenameUtils;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.plugins.cxx.CxxPlugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the file paths found in reports to the indexed resources of a project.
+ * Reports spell the same file in many ways: relative to the base directory,
+ * absolute, with '..' segments, with the backslashes of Windows builds or with
+ * the directory of the build machine. The paths are normalized, rewritten by the
+ * configured prefixes and looked up once; later lookups of the same spelling or
+ * of another spelling of the same file are served from a cache.
+ */
+public final class CxxPathResolver {
+  private static final int MAX_LOGGED_UNRESOLVED = 10;
+
+  private final Project project;
+  private final SensorContext context;
+  private final String baseDir;
+  private final List<String[]> rewrites = new ArrayList<String[]>();
+
+  // raw path -> resource and normalized path -> resource; a null resource means 'not indexed'
+  private final Map<String, org.sonar.api.resources.File> rawPaths = new HashMap<String, org.sonar.api.resources.File>();
+  private final Map<String, org.sonar.api.resources.File> normalizedPaths = new HashMap<String, org.sonar.api.resources.File>();
+  private final Map<String, Integer> unresolved = new HashMap<String, Integer>();
+  private int lookups;
+  private int cacheHits;
+
+  /**
+   * @param conf The settings to read the path rewrites from, may be null
+   */
+  public CxxPathResolver(Project project, SensorContext context, Settings conf) {
+    this.project = project;
+    this.context = context;
+    this.baseDir = unixPath(project.getFileSystem().getBasedir().getAbsolutePath());
+    if (conf != null) {
+      for (String rewrite : conf.getStringArray(CxxPlugin.PATH_REWRITES_KEY)) {
+        addRewrite(rewrite);
+      }
+    }
+  }
+
+  private void addRewrite(String rewrite) {
+    int separator = rewrite.lastIndexOf('=');
+    if (separator <= 0) {
+      CxxUtils.LOG.warn("Ignoring the path rewrite '{}', expected 'from=to'", rewrite);
+      return;
+    }
+    String from = stripTrailingSlash(unixPath(rewrite.substring(0, separator).trim()));
+    String to = stripTrailingSlash(unixPath(rewrite.substring(separator + 1).trim()));
+    rewrites.add(new String[] {from, to});
+  }
+
+  boolean isFor(Project project, SensorContext context) {
+    return this.project == project && this.context == context;
+  }
+
+  /**
+   * Returns the indexed resource for the given path or null, if the path
+   * does not denote an indexed file of the project
+   */
+  public org.sonar.api.resources.File resolve(String path) {
+    lookups++;
+    if (rawPaths.containsKey(path)) {
+      cacheHits++;
+      return countIfUnresolved(path, rawPaths.get(path));
+    }
+
+    String normalized = normalize(path);
+    org.sonar.api.resources.File resource;
+    if (normalizedPaths.containsKey(normalized)) {
+      cacheHits++;
+      resource = normalizedPaths.get(normalized);
+    } else {
+      resource = lookup(normalized);
+      normalizedPaths.put(normalized, resource);
+    }
+    rawPaths.put(path, resource);
+    return countIfUnresolved(path, resource);
+  }
+
+  private org.sonar.api.resources.File lookup(String normalized) {
+    if (normalized == null) {
+      return null;
+    }
+    return context.getResource(org.sonar.api.resources.File.fromIOFile(new File(normalized), project));
+  }
+
+  private org.sonar.api.resources.File countIfUnresolved(String path, org.sonar.api.resources.File resource) {
+    if (resource == null) {
+      Integer count = unresolved.get(path);
+      unresolved.put(path, count == null ? 1 : count + 1);
+    }
+    return resource;
+  }
+
+  /**
+   * Returns the absolute path with '/' separators and without '.' and '..'
+   * segments the given report path stands for. Relative paths are relative to
+   * the base directory. Returns null, if '..' leads out of the file system root.
+   */
+  String normalize(String path) {
+    String result = unixPath(path.trim());
+    for (String[] rewrite : rewrites) {
+      if (result.equals(rewrite[0]) || result.startsWith(rewrite[0] + "/")) {
+        result = rewrite[1] + result.substring(rewrite[0].length());
+        break;
+      }
+    }
+    if (!isAbsolute(result)) {
+      result = baseDir + "/" + result;
+    }
+    return FilenameUtils.normalize(result, true);
+  }
+
+  // paths of Windows builds are absolute on any platform
+  private static boolean isAbsolute(String path) {
+    return path.startsWith("/") || new File(path).isAbsolute()
+      || (path.length() > 2 && Character.isLetter(path.charAt(0)) && path.charAt(1) == ':' && path.charAt(2) == '/');
+  }
+
+  private static String unixPath(String path) {
+    return path.replace('\\', '/');
+  }
+
+  private static String stripTrailingSlash(String path) {
+    return path.length() > 1 && path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+  }
+
+  /**
+   * Logs the number of lookups and the most frequent paths which could not be resolved
+   */
+  public void logStatistics() {
+    if (lookups == 0) {
+      return;
+    }
+    int resolved = 0;
+    for (org.sonar.api.resources.File resource : normalizedPaths.values()) {
+      if (resource != null) {
+        resolved++;
+      }
+    }
+    CxxUtils.LOG.info("File lookups: {} cached, {} resolved, {} unresolved",
+        new Object[] {cacheHits, resolved, normalizedPaths.size() - resolved});
+
+    if (!unresolved.isEmpty()) {
+      List<Map.Entry<String, Integer>> entries = new ArrayList<Map.Entry<String, Integer>>(unresolved.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<String, Integer>>() {
+        public int compare(Map.Entry<String, Integer> e1, Map.Entry<String, Integer> e2) {
+          int byCount = e2.getValue().compareTo(e1.getValue());
+          return byCount != 0 ? byCount : e1.getKey().compareTo(e2.getKey());
+        }
+      });
+      CxxUtils.LOG.info("{} paths in reports do not denote files of the project, the most frequent ones:",
+          unresolved.size());
+      for (Map.Entry<String, Integer> entry : entries.subList(0, Math.min(MAX_LOGGED_UNRESOLVED, entries.size()))) {
+        CxxUtils.LOG.info("  '{}' ({} times)", entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  int getLookups() {
+    return lookups;
+  }
+
+  int getCacheHits() {
+    return cacheHits;
+  }
+
+  /**
+   * Returns the number of lookups per raw path which could not be resolved
+   */
+  Map<String, Integer> getUnresolved() {
+    return Collections.unmodifiableMap(unresolved);
+  }
+}
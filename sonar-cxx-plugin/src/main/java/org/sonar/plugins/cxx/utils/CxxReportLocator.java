@@ -0,0 +1,324 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.utils;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the report files of all sensors. The report paths are Ant patterns
+ * relative to the project's base directory. The sensors register when they
+ * are created; the first lookup then asks them for their patterns and walks
+ * the base directory once, matching all registered patterns, and later lookups
+ * are served from the result.
+ *
+ * There is one locator per Settings instance, which means per analysis. The
+ * locator refers to its settings only weakly, so that both are collected
+ * when the analysis is over.
+ */
+public final class CxxReportLocator {
+  private static final Map<Settings, CxxReportLocator> LOCATORS = new WeakHashMap<Settings, CxxReportLocator>();
+
+  private final WeakReference<Settings> conf;
+  private final Map<String, String> reportPaths = new LinkedHashMap<String, String>();
+  // the sensors are asked for their patterns only when these are needed, as
+  // they may compute them from fields which are not set during registration
+  private final List<WeakReference<CxxReportSensor>> sensors = new ArrayList<WeakReference<CxxReportSensor>>();
+  // base directory -> pattern -> matching files
+  private final Map<String, Map<String, List<File>>> results = new HashMap<String, Map<String, List<File>>>();
+  private int walks;
+
+  private CxxReportLocator(Settings conf) {
+    this.conf = new WeakReference<Settings>(conf);
+  }
+
+  /**
+   * Returns the locator shared by all sensors using the given settings
+   */
+  public static CxxReportLocator forSettings(Settings conf) {
+    synchronized (LOCATORS) {
+      CxxReportLocator locator = LOCATORS.get(conf);
+      if (locator == null) {
+        locator = new CxxReportLocator(conf);
+        LOCATORS.put(conf, locator);
+      }
+      return locator;
+    }
+  }
+
+  /**
+   * Announces that reports will be looked up with the given property key and
+   * default pattern, so that they are included in the walk of the base directory.
+   */
+  public synchronized void register(String reportPathKey, String defaultReportPath) {
+    reportPaths.put(reportPathKey, defaultReportPath);
+  }
+
+  /**
+   * Announces that the given sensor will look up its reports, see
+   * {@link CxxReportSensor#reportPathKey} and {@link CxxReportSensor#defaultReportPath}
+   */
+  public synchronized void register(CxxReportSensor sensor) {
+    sensors.add(new WeakReference<CxxReportSensor>(sensor));
+  }
+
+  /**
+   * Returns the files in the base directory which match the pattern configured
+   * by the given key or, if the key is not set, the given default pattern
+   */
+  public synchronized List<File> getReports(String baseDirPath, String reportPathKey, String defaultReportPath) {
+    String pattern = resolve(reportPathKey, defaultReportPath);
+    CxxUtils.LOG.debug("Using pattern '{}' to find reports", pattern);
+
+    if (new File(pattern).isAbsolute()) {
+      return scan(baseDirPath, pattern);
+    }
+
+    Map<String, List<File>> found = results.get(baseDirPath);
+    if (found == null) {
+      found = new HashMap<String, List<File>>();
+      results.put(baseDirPath, found);
+    }
+    if (!found.containsKey(pattern)) {
+      Set<String> patterns = new LinkedHashSet<String>();
+      patterns.add(pattern);
+      for (Map.Entry<String, String> entry : registeredReportPaths().entrySet()) {
+        String registered = resolve(entry.getKey(), entry.getValue());
+        if (!found.containsKey(registered) && !new File(registered).isAbsolute()) {
+          patterns.add(registered);
+        }
+      }
+      found.putAll(walk(new File(baseDirPath), patterns));
+    }
+
+    return new ArrayList<File>(found.get(pattern));
+  }
+
+  private Map<String, String> registeredReportPaths() {
+    Map<String, String> paths = new LinkedHashMap<String, String>(reportPaths);
+    for (WeakReference<CxxReportSensor> reference : sensors) {
+      CxxReportSensor sensor = reference.get();
+      if (sensor != null && !"".equals(sensor.reportPathKey())) {
+        paths.put(sensor.reportPathKey(), sensor.defaultReportPath());
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * The number of times a base directory has been walked
+   */
+  int getWalks() {
+    return walks;
+  }
+
+  private String resolve(String reportPathKey, String defaultReportPath) {
+    Settings settings = conf.get();
+    String reportPath = settings == null ? null : settings.getString(reportPathKey);
+    return reportPath == null ? defaultReportPath : reportPath;
+  }
+
+  private static List<File> scan(String baseDirPath, String pattern) {
+    DirectoryScanner scanner = new DirectoryScanner();
+    scanner.setIncludes(new String[] {pattern});
+    scanner.setBasedir(new File(baseDirPath));
+    scanner.scan();
+
+    List<File> reports = new ArrayList<File>();
+    for (String relPath : scanner.getIncludedFiles()) {
+      reports.add(new File(baseDirPath, relPath));
+    }
+    return reports;
+  }
+
+  private Map<String, List<File>> walk(File baseDir, Set<String> patterns) {
+    walks++;
+    List<AntPattern> includes = new ArrayList<AntPattern>();
+    Map<String, List<File>> found = new HashMap<String, List<File>>();
+    for (String pattern : patterns) {
+      includes.add(new AntPattern(pattern));
+      found.put(pattern, new ArrayList<File>());
+    }
+    List<AntPattern> excludes = new ArrayList<AntPattern>();
+    for (String pattern : DirectoryScanner.getDefaultExcludes()) {
+      excludes.add(new AntPattern(pattern));
+    }
+
+    long start = System.currentTimeMillis();
+    walk(baseDir, "", 0, includes, excludes, found, new HashSet<String>());
+    CxxUtils.LOG.debug("Searched reports for {} pattern(s) in {} ms", patterns.size(),
+        System.currentTimeMillis() - start);
+    return found;
+  }
+
+  /**
+   * Directories reached again through symbolic links, e.g. by a link to a
+   * parent directory, are not walked twice
+   */
+  private static void walk(File dir, String relDir, int depth, List<AntPattern> includes,
+      List<AntPattern> excludes, Map<String, List<File>> found, Set<String> visited) {
+    if (!visited.add(canonicalPath(dir))) {
+      CxxUtils.LOG.debug("Skipping '{}', the directory has been searched already", dir);
+      return;
+    }
+    String[] names = dir.list();
+    if (names == null) {
+      return;
+    }
+    for (String name : names) {
+      File file = new File(dir, name);
+      String relPath = relDir + name;
+      if (matchesAny(excludes, relPath)) {
+        continue;
+      }
+      if (file.isDirectory()) {
+        String subDir = relPath + "/";
+        for (AntPattern include : includes) {
+          if (include.mayMatchBelow(subDir, depth + 1)) {
+            walk(file, subDir, depth + 1, includes, excludes, found, visited);
+            break;
+          }
+        }
+      } else {
+        for (AntPattern include : includes) {
+          if (include.matches(relPath)) {
+            found.get(include.pattern).add(new File(dir.getPath(), name));
+          }
+        }
+      }
+    }
+  }
+
+  private static String canonicalPath(File dir) {
+    try {
+      return dir.getCanonicalPath();
+    } catch (IOException e) {
+      return dir.getAbsolutePath();
+    }
+  }
+
+  private static boolean matchesAny(List<AntPattern> patterns, String relPath) {
+    for (AntPattern pattern : patterns) {
+      if (pattern.matches(relPath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * An Ant pattern compiled into a regular expression, plus what is needed to
+   * decide whether a directory can contain matches at all
+   */
+  static final class AntPattern {
+    private final String pattern;
+    private final Pattern regex;
+    // the leading directories without wildcards, with a trailing '/'
+    private final String literalPrefix;
+    // the number of directories a match lies below the base, -1 if unbounded
+    private final int maxDepth;
+
+    AntPattern(String pattern) {
+      this.pattern = pattern;
+
+      String normalized = pattern.replace('\\', '/');
+      if (normalized.endsWith("/")) {
+        normalized += "**";
+      }
+      String[] segments = normalized.split("/");
+      StringBuilder re = new StringBuilder();
+      StringBuilder prefix = new StringBuilder();
+      boolean literal = true;
+      boolean unbounded = false;
+      for (int i = 0; i < segments.length; i++) {
+        String segment = segments[i];
+        boolean last = i == segments.length - 1;
+        if ("**".equals(segment)) {
+          unbounded = true;
+          re.append(last ? ".*" : "(?:[^/]*/)*");
+          literal = false;
+          continue;
+        }
+        boolean wildcard = segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+        if (literal && !last && !wildcard) {
+          prefix.append(segment).append('/');
+        } else {
+          literal = false;
+        }
+        appendSegment(re, segment);
+        if (!last) {
+          re.append('/');
+        }
+      }
+
+      this.regex = Pattern.compile(re.toString());
+      this.literalPrefix = prefix.toString();
+      this.maxDepth = unbounded ? -1 : segments.length - 1;
+    }
+
+    private static void appendSegment(StringBuilder re, String segment) {
+      StringBuilder literal = new StringBuilder();
+      for (int i = 0; i < segment.length(); i++) {
+        char c = segment.charAt(i);
+        if (c == '*' || c == '?') {
+          if (literal.length() > 0) {
+            re.append(Pattern.quote(literal.toString()));
+            literal.setLength(0);
+          }
+          re.append(c == '*' ? "[^/]*" : "[^/]");
+        } else {
+          literal.append(c);
+        }
+      }
+      if (literal.length() > 0) {
+        re.append(Pattern.quote(literal.toString()));
+      }
+    }
+
+    boolean matches(String relPath) {
+      return regex.matcher(relPath).matches();
+    }
+
+    /**
+     * Whether files below the given directory (relative, with a trailing '/')
+     * at the given depth can match this pattern
+     */
+    boolean mayMatchBelow(String relDir, int depth) {
+      if (maxDepth >= 0 && depth > maxDepth) {
+        return false;
+      }
+      return relDir.startsWith(literalPrefix) || literalPrefix.startsWith(relDir);
+    }
+  }
+}
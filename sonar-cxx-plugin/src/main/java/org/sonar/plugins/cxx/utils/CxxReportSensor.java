@@ -19,7 +19,6 @@
  */
 package org.sonar.plugins.cxx.utils;
 
-import org.apache.tools.ant.DirectoryScanner;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
@@ -30,10 +29,21 @@ import org.sonar.api.rules.RuleQuery;
 import org.sonar.api.rules.Violation;
 import org.sonar.api.utils.SonarException;
 import org.sonar.plugins.cxx.CxxLanguage;
+import org.sonar.plugins.cxx.CxxPlugin;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * {@inheritDoc}
@@ -42,6 +52,43 @@ public abstract class CxxReportSensor implements Sensor {
   private RuleFinder ruleFinder;
   private Settings conf = null;
 
+  // Reports typically contain many violations of few rules in few files, so
+  // the lookups are cached per analysis. A null rule means 'not found'.
+  private final Map<String, Rule> ruleCache = new HashMap<String, Rule>();
+  private int ruleCacheHits;
+  private CxxPathResolver pathResolver;
+
+  // While a sensor analyses, violations are collected per file and saved in
+  // batches; identical violations, e.g. from overlapping reports, are saved once.
+  // Both are keyed by the resolved resource, so different spellings of a path meet.
+  private static final int MAX_BATCH_SIZE = 10000;
+  private final Map<org.sonar.api.resources.File, Set<String>> savedViolations =
+      new HashMap<org.sonar.api.resources.File, Set<String>>();
+  private final Map<org.sonar.api.resources.File, List<Violation>> violationBatch =
+      new LinkedHashMap<org.sonar.api.resources.File, List<Violation>>();
+  private int batchSize;
+  private int duplicateViolations;
+  private boolean batching;
+
+  // set while a report is processed on a worker thread
+  private final ThreadLocal<List<PendingViolation>> pendingViolations = new ThreadLocal<List<PendingViolation>>();
+
+  private static class PendingViolation {
+    private final String ruleRepoKey;
+    private final String file;
+    private final int line;
+    private final String ruleId;
+    private final String msg;
+
+    PendingViolation(String ruleRepoKey, String file, int line, String ruleId, String msg) {
+      this.ruleRepoKey = ruleRepoKey;
+      this.file = file;
+      this.line = line;
+      this.ruleId = ruleId;
+      this.msg = msg;
+    }
+  }
+
   public CxxReportSensor() {
   }
 
@@ -50,6 +97,7 @@ public abstract class CxxReportSensor implements Sensor {
    */
   public CxxReportSensor(Settings conf) {
     this.conf = conf;
+    registerReportPath();
   }
 
   /**
@@ -58,6 +106,15 @@ public abstract class CxxReportSensor implements Sensor {
   public CxxReportSensor(RuleFinder ruleFinder, Settings conf) {
     this.ruleFinder = ruleFinder;
     this.conf = conf;
+    registerReportPath();
+  }
+
+  private void registerReportPath() {
+    if (conf != null) {
+      // the locator asks for the report path when it is needed, the subclass
+      // is not initialized yet
+      CxxReportLocator.forSettings(conf).register(this);
+    }
   }
 
   /**
@@ -71,17 +128,26 @@ public abstract class CxxReportSensor implements Sensor {
    * {@inheritDoc}
    */
   public void analyse(Project project, SensorContext context) {
+    clearCaches();
+    batching = true;
     try {
       List<File> reports = getReports(conf, project.getFileSystem().getBasedir().getPath(),
           reportPathKey(), defaultReportPath());
-      for (File report : reports) {
-        CxxUtils.LOG.info("Processing report '{}'", report);
-        processReport(project, context, report);
+      int threads = conf == null ? 1 : conf.getInt(CxxPlugin.REPORT_THREADS_KEY);
+      if (threads > 1 && reports.size() > 1 && canProcessReportsInParallel()) {
+        processReportsInParallel(project, context, reports, Math.min(threads, reports.size()));
+      } else {
+        for (File report : reports) {
+          CxxUtils.LOG.info("Processing report '{}'", report);
+          processReport(project, context, report);
+        }
       }
 
       if (reports.isEmpty()) {
         handleNoReportsCase(context);
       }
+      flushViolations(context);
+      logCacheStatistics();
     } catch (Exception e) {
       String msg = new StringBuilder()
           .append("Cannot feed the data into sonar, details: '")
@@ -89,6 +155,11 @@ public abstract class CxxReportSensor implements Sensor {
           .append("'")
           .toString();
       throw new SonarException(msg, e);
+    } finally {
+      batching = false;
+      violationBatch.clear();
+      batchSize = 0;
+      savedViolations.clear();
     }
   }
 
@@ -101,46 +172,189 @@ public abstract class CxxReportSensor implements Sensor {
       String baseDirPath,
       String reportPathPropertyKey,
       String defaultReportPath) {
-    String reportPath = conf.getString(reportPathPropertyKey);
-    if (reportPath == null) {
-      reportPath = defaultReportPath;
-    }
+    return CxxReportLocator.forSettings(conf).getReports(baseDirPath, reportPathPropertyKey, defaultReportPath);
+  }
 
-    CxxUtils.LOG.debug("Using pattern '{}' to find reports", reportPath);
+  /**
+   * Reports are parsed on a pool of the given size. The SensorContext is not thread-safe,
+   * so the violations found by the workers are buffered and saved by the calling thread,
+   * report by report, in the order the reports have been found.
+   */
+  private void processReportsInParallel(final Project project, final SensorContext context,
+      List<File> reports, int threads) throws Exception {
+    // bounds the number of parsed but not yet saved reports
+    int window = 2 * threads;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<PendingViolation>>> results = new ArrayList<Future<List<PendingViolation>>>();
+      for (int i = 0; i < reports.size(); i++) {
+        while (results.size() < reports.size() && results.size() < i + window) {
+          results.add(executor.submit(parseReportTask(project, context, reports.get(results.size()))));
+        }
 
-    DirectoryScanner scanner = new DirectoryScanner();
-    String[] includes = new String[1];
-    includes[0] = reportPath;
-    scanner.setIncludes(includes);
-    scanner.setBasedir(new File(baseDirPath));
-    scanner.scan();
-    String[] relPaths = scanner.getIncludedFiles();
+        CxxUtils.LOG.info("Processing report '{}'", reports.get(i));
+        List<PendingViolation> violations = waitFor(results.get(i));
+        results.set(i, null);
+        for (PendingViolation v : violations) {
+          doSaveViolation(project, context, v.ruleRepoKey, v.file, v.line, v.ruleId, v.msg);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-    List<File> reports = new ArrayList<File>();
-    for (String relPath : relPaths) {
-      reports.add(new File(baseDirPath, relPath));
+  private Callable<List<PendingViolation>> parseReportTask(final Project project, final SensorContext context,
+      final File report) {
+    return new Callable<List<PendingViolation>>() {
+      public List<PendingViolation> call() throws Exception {
+        List<PendingViolation> violations = new ArrayList<PendingViolation>();
+        pendingViolations.set(violations);
+        try {
+          processReport(project, context, report);
+        } finally {
+          pendingViolations.remove();
+        }
+        return violations;
+      }
+    };
+  }
+
+  private static <T> T waitFor(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
     }
+  }
 
-    return reports;
+  /**
+   * Whether {@link #processReport} may be called concurrently for different reports.
+   * This holds when it reads only the given report and passes its results to
+   * {@link #saveViolation} instead of using the SensorContext directly.
+   */
+  protected boolean canProcessReportsInParallel() {
+    return false;
   }
 
   protected void saveViolation(Project project, SensorContext context, String ruleRepoKey,
       String file, int line, String ruleId, String msg) {
-    RuleQuery ruleQuery = RuleQuery.create()
-        .withRepositoryKey(ruleRepoKey)
-        .withKey(ruleId);
-    Rule rule = ruleFinder.find(ruleQuery);
+    List<PendingViolation> pending = pendingViolations.get();
+    if (pending != null) {
+      pending.add(new PendingViolation(ruleRepoKey, file, line, ruleId, msg));
+    } else {
+      doSaveViolation(project, context, ruleRepoKey, file, line, ruleId, msg);
+    }
+  }
+
+  private void doSaveViolation(Project project, SensorContext context, String ruleRepoKey,
+      String file, int line, String ruleId, String msg) {
+    Rule rule = findRule(ruleRepoKey, ruleId);
     if (rule != null) {
-      org.sonar.api.resources.File resource =
-          org.sonar.api.resources.File.fromIOFile(new File(file), project);
-      if (context.getResource(resource) != null) {
+      org.sonar.api.resources.File resource = resolveFile(project, context, file);
+      if (resource != null) {
+        if (!markSaved(resource, ruleRepoKey + ":" + ruleId + "|" + line + "|" + msg)) {
+          duplicateViolations++;
+          return;
+        }
         Violation violation = Violation.create(rule, resource).setLineId(line).setMessage(msg);
-        context.saveViolation(violation);
+        if (batching) {
+          addToBatch(context, resource, violation);
+        } else {
+          context.saveViolation(violation);
+        }
       } else {
         CxxUtils.LOG.debug("Cannot find the file '{}', skipping violation '{}'", file, msg);
       }
     } else {
-      CxxUtils.LOG.warn("Cannot find the rule {}, skipping violation", ruleId);
+      CxxUtils.LOG.debug("Cannot find the rule {}, skipping violation", ruleId);
+    }
+  }
+
+  private boolean markSaved(org.sonar.api.resources.File resource, String violationKey) {
+    Set<String> saved = savedViolations.get(resource);
+    if (saved == null) {
+      saved = new HashSet<String>();
+      savedViolations.put(resource, saved);
+    }
+    return saved.add(violationKey);
+  }
+
+  private void addToBatch(SensorContext context, org.sonar.api.resources.File resource, Violation violation) {
+    List<Violation> violations = violationBatch.get(resource);
+    if (violations == null) {
+      violations = new ArrayList<Violation>();
+      violationBatch.put(resource, violations);
+    }
+    violations.add(violation);
+    if (++batchSize >= MAX_BATCH_SIZE) {
+      flushViolations(context);
+    }
+  }
+
+  private void flushViolations(SensorContext context) {
+    for (List<Violation> violations : violationBatch.values()) {
+      for (Violation violation : violations) {
+        context.saveViolation(violation);
+      }
+    }
+    violationBatch.clear();
+    batchSize = 0;
+  }
+
+  private Rule findRule(String ruleRepoKey, String ruleId) {
+    String key = ruleRepoKey + ":" + ruleId;
+    if (ruleCache.containsKey(key)) {
+      ruleCacheHits++;
+      return ruleCache.get(key);
+    }
+
+    RuleQuery ruleQuery = RuleQuery.create()
+        .withRepositoryKey(ruleRepoKey)
+        .withKey(ruleId);
+    Rule rule = ruleFinder.find(ruleQuery);
+    if (rule == null) {
+      CxxUtils.LOG.warn("Cannot find the rule {}, skipping its violations", ruleId);
+    }
+    ruleCache.put(key, rule);
+    return rule;
+  }
+
+  /**
+   * Returns the indexed resource the given report path stands for or null.
+   * The paths are resolved once per analysis, see {@link CxxPathResolver}.
+   */
+  protected org.sonar.api.resources.File resolveFile(Project project, SensorContext context, String file) {
+    if (pathResolver == null || !pathResolver.isFor(project, context)) {
+      pathResolver = new CxxPathResolver(project, context, conf);
+    }
+    return pathResolver.resolve(file);
+  }
+
+  private void clearCaches() {
+    ruleCache.clear();
+    ruleCacheHits = 0;
+    pathResolver = null;
+    savedViolations.clear();
+    duplicateViolations = 0;
+  }
+
+  private void logCacheStatistics() {
+    if (!ruleCache.isEmpty()) {
+      CxxUtils.LOG.info("Rule lookups: {} cached, {} distinct rules", ruleCacheHits, ruleCache.size());
+    }
+    if (pathResolver != null) {
+      pathResolver.logStatistics();
+    }
+    if (duplicateViolations > 0) {
+      CxxUtils.LOG.info("Skipped {} duplicate violations", duplicateViolations);
     }
   }
 
@@ -149,6 +363,21 @@ public abstract class CxxReportSensor implements Sensor {
   {
   }
 
+  /**
+   * Saves the issues of a report in the given format as violations of the
+   * rules in the given repository
+   */
+  protected void processIssueReport(final Project project, final SensorContext context, File report,
+      CxxIssueReportFormat format, final String ruleRepoKey)
+      throws javax.xml.stream.XMLStreamException
+  {
+    format.parse(report, new CxxIssueReportFormat.IssueHandler() {
+      public void handleIssue(String file, int line, String id, String msg) {
+        saveViolation(project, context, ruleRepoKey, file, line, id, msg);
+      }
+    });
+  }
+
   protected void handleNoReportsCase(SensorContext context) {
   }
 
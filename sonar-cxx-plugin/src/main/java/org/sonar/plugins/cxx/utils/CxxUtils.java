@@ -19,16 +19,28 @@
  */
 package org.sonar.plugins.cxx.utils;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.api.utils.StaxParser;
 
+import javax.xml.stream.XMLStreamException;
+
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Utility class holding various, well, utilities
  */
 public final class CxxUtils {
 
+  private static final int[] GZIP_MAGIC = {0x1f, 0x8b};
+  private static final int[] ZSTD_MAGIC = {0x28, 0xb5, 0x2f, 0xfd};
+
   private CxxUtils() {
     // only static methods
   }
@@ -48,4 +60,54 @@ public final class CxxUtils {
     }
     return file.getAbsolutePath();
   }
+
+  /**
+   * Opens the given report for reading. Gzip compressed reports are recognized
+   * by their content, whatever their name, and inflated while they are read.
+   */
+  public static InputStream openReport(File report) throws IOException {
+    InputStream input = new BufferedInputStream(new FileInputStream(report));
+    try {
+      input.mark(ZSTD_MAGIC.length);
+      int[] magic = new int[ZSTD_MAGIC.length];
+      for (int i = 0; i < magic.length; i++) {
+        magic[i] = input.read();
+      }
+      input.reset();
+      if (startsWith(magic, GZIP_MAGIC)) {
+        input = new BufferedInputStream(new GZIPInputStream(input, 64 * 1024));
+      } else if (startsWith(magic, ZSTD_MAGIC)) {
+        throw new IOException("The report '" + report + "' is zstd compressed, which is not supported."
+          + " Please compress it with gzip or decompress it with 'zstd -d'.");
+      }
+      return input;
+    } catch (IOException e) {
+      IOUtils.closeQuietly(input);
+      throw e;
+    }
+  }
+
+  /**
+   * Parses the given report, which may be compressed, see {@link #openReport(File)}
+   */
+  public static void parseReport(StaxParser parser, File report) throws XMLStreamException {
+    InputStream input = null;
+    try {
+      input = openReport(report);
+      parser.parse(input);
+    } catch (IOException e) {
+      throw new XMLStreamException("Cannot read the report '" + report + "'", e);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
+  }
+
+  private static boolean startsWith(int[] bytes, int[] magic) {
+    for (int i = 0; i < magic.length; i++) {
+      if (bytes[i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
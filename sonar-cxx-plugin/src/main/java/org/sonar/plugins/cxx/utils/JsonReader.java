@@ -0,0 +1,389 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Minimal pull parser for JSON documents. Values are read one by one from the
+ * underlying reader, so that large reports can be processed without building
+ * a tree of the whole document.
+ */
+public final class JsonReader {
+
+  /**
+   * The kinds of tokens returned by {@link JsonReader#peek()}
+   */
+  public enum Token {
+    BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+  }
+
+  private static final int EMPTY_DOCUMENT = 0;
+  private static final int NONEMPTY_DOCUMENT = 1;
+  private static final int EMPTY_OBJECT = 2;
+  private static final int NONEMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int EMPTY_ARRAY = 5;
+  private static final int NONEMPTY_ARRAY = 6;
+
+  private static final int EOF = -1;
+
+  private final Reader in;
+  private final char[] buffer = new char[8192];
+  private int pos = 0;
+  private int limit = 0;
+  private long offset = 0;
+
+  private int[] scopes = new int[32];
+  private int depth = 1;
+
+  private Token peeked;
+  private String value;
+  private final StringBuilder text = new StringBuilder();
+
+  public JsonReader(Reader in) {
+    this.in = in;
+    scopes[0] = EMPTY_DOCUMENT;
+  }
+
+  /**
+   * Returns the kind of the next token without consuming it
+   */
+  public Token peek() throws IOException {
+    if (peeked != null) {
+      return peeked;
+    }
+
+    int scope = scopes[depth - 1];
+    switch (scope) {
+      case EMPTY_DOCUMENT:
+        scopes[depth - 1] = NONEMPTY_DOCUMENT;
+        peeked = readValue(nextNonWhitespace());
+        break;
+      case NONEMPTY_DOCUMENT:
+        if (nextNonWhitespace() != EOF) {
+          throw syntaxError("Expected the end of the document");
+        }
+        peeked = Token.END_DOCUMENT;
+        break;
+      case EMPTY_ARRAY:
+      case NONEMPTY_ARRAY:
+        int c = nextNonWhitespace();
+        if (c == ']') {
+          peeked = Token.END_ARRAY;
+        } else {
+          if (scope == NONEMPTY_ARRAY) {
+            if (c != ',') {
+              throw syntaxError("Expected ',' or ']'");
+            }
+            c = nextNonWhitespace();
+          }
+          scopes[depth - 1] = NONEMPTY_ARRAY;
+          peeked = readValue(c);
+        }
+        break;
+      case EMPTY_OBJECT:
+      case NONEMPTY_OBJECT:
+        c = nextNonWhitespace();
+        if (c == '}') {
+          peeked = Token.END_OBJECT;
+        } else {
+          if (scope == NONEMPTY_OBJECT) {
+            if (c != ',') {
+              throw syntaxError("Expected ',' or '}'");
+            }
+            c = nextNonWhitespace();
+          }
+          if (c != '"') {
+            throw syntaxError("Expected a name");
+          }
+          value = readString();
+          if (nextNonWhitespace() != ':') {
+            throw syntaxError("Expected ':'");
+          }
+          scopes[depth - 1] = DANGLING_NAME;
+          peeked = Token.NAME;
+        }
+        break;
+      case DANGLING_NAME:
+        scopes[depth - 1] = NONEMPTY_OBJECT;
+        peeked = readValue(nextNonWhitespace());
+        break;
+      default:
+        throw new IllegalStateException("Unknown scope " + scope);
+    }
+    return peeked;
+  }
+
+  public void beginObject() throws IOException {
+    consume(Token.BEGIN_OBJECT);
+    push(EMPTY_OBJECT);
+  }
+
+  public void endObject() throws IOException {
+    consume(Token.END_OBJECT);
+    depth--;
+  }
+
+  public void beginArray() throws IOException {
+    consume(Token.BEGIN_ARRAY);
+    push(EMPTY_ARRAY);
+  }
+
+  public void endArray() throws IOException {
+    consume(Token.END_ARRAY);
+    depth--;
+  }
+
+  /**
+   * Whether the current object or array has another element
+   */
+  public boolean hasNext() throws IOException {
+    Token token = peek();
+    return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+  }
+
+  public String nextName() throws IOException {
+    consume(Token.NAME);
+    return value;
+  }
+
+  /**
+   * Returns the next string or the literal text of the next number
+   */
+  public String nextString() throws IOException {
+    if (peek() != Token.STRING && peeked != Token.NUMBER) {
+      throw syntaxError("Expected a string but was " + peeked);
+    }
+    peeked = null;
+    return value;
+  }
+
+  public long nextLong() throws IOException {
+    String number = nextString();
+    try {
+      return Long.parseLong(number);
+    } catch (NumberFormatException e) {
+      try {
+        return (long) Double.parseDouble(number);
+      } catch (NumberFormatException e2) {
+        throw syntaxError("Expected a number but was '" + number + "'");
+      }
+    }
+  }
+
+  public int nextInt() throws IOException {
+    long number = nextLong();
+    if (number > Integer.MAX_VALUE) {
+      return Integer.MAX_VALUE;
+    }
+    return number < Integer.MIN_VALUE ? Integer.MIN_VALUE : (int) number;
+  }
+
+  public boolean nextBoolean() throws IOException {
+    consume(Token.BOOLEAN);
+    return "true".equals(value);
+  }
+
+  public void nextNull() throws IOException {
+    consume(Token.NULL);
+  }
+
+  /**
+   * Skips the next value, including all nested values of an object or array
+   */
+  public void skipValue() throws IOException {
+    int nesting = 0;
+    do {
+      Token token = peek();
+      if (token == Token.BEGIN_OBJECT) {
+        beginObject();
+        nesting++;
+      } else if (token == Token.BEGIN_ARRAY) {
+        beginArray();
+        nesting++;
+      } else if (token == Token.END_OBJECT) {
+        endObject();
+        nesting--;
+      } else if (token == Token.END_ARRAY) {
+        endArray();
+        nesting--;
+      } else if (token == Token.END_DOCUMENT) {
+        throw syntaxError("Unexpected end of the document");
+      } else {
+        peeked = null;
+      }
+    } while (nesting > 0);
+  }
+
+  private void consume(Token expected) throws IOException {
+    if (peek() != expected) {
+      throw syntaxError("Expected " + expected + " but was " + peeked);
+    }
+    peeked = null;
+  }
+
+  private void push(int scope) {
+    if (depth == scopes.length) {
+      int[] grown = new int[depth * 2];
+      System.arraycopy(scopes, 0, grown, 0, depth);
+      scopes = grown;
+    }
+    scopes[depth++] = scope;
+  }
+
+  private Token readValue(int c) throws IOException {
+    switch (c) {
+      case '{':
+        return Token.BEGIN_OBJECT;
+      case '[':
+        return Token.BEGIN_ARRAY;
+      case '"':
+        value = readString();
+        return Token.STRING;
+      case 't':
+        readLiteral("rue");
+        value = "true";
+        return Token.BOOLEAN;
+      case 'f':
+        readLiteral("alse");
+        value = "false";
+        return Token.BOOLEAN;
+      case 'n':
+        readLiteral("ull");
+        value = null;
+        return Token.NULL;
+      case EOF:
+        throw syntaxError("Unexpected end of the document");
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          value = readNumber((char) c);
+          return Token.NUMBER;
+        }
+        throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+  }
+
+  private void readLiteral(String rest) throws IOException {
+    for (int i = 0; i < rest.length(); i++) {
+      if (read() != rest.charAt(i)) {
+        throw syntaxError("Unexpected literal");
+      }
+    }
+  }
+
+  private String readNumber(char first) throws IOException {
+    text.setLength(0);
+    text.append(first);
+    while (true) {
+      if (pos == limit && !fill()) {
+        break;
+      }
+      char c = buffer[pos];
+      if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+        text.append(c);
+        pos++;
+        offset++;
+      } else {
+        break;
+      }
+    }
+    return text.toString();
+  }
+
+  private String readString() throws IOException {
+    text.setLength(0);
+    while (true) {
+      int c = read();
+      if (c == '"') {
+        return text.toString();
+      } else if (c == '\\') {
+        text.append(readEscape());
+      } else if (c == EOF) {
+        throw syntaxError("Unterminated string");
+      } else {
+        text.append((char) c);
+      }
+    }
+  }
+
+  private char readEscape() throws IOException {
+    int c = read();
+    switch (c) {
+      case 'u':
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(read(), 16);
+          if (digit < 0) {
+            throw syntaxError("Invalid unicode escape");
+          }
+          code = (code << 4) | digit;
+        }
+        return (char) code;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case '"':
+      case '\\':
+      case '/':
+        return (char) c;
+      default:
+        throw syntaxError("Invalid escape sequence");
+    }
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int c = read();
+    while (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+      c = read();
+    }
+    return c;
+  }
+
+  private int read() throws IOException {
+    if (pos == limit && !fill()) {
+      return EOF;
+    }
+    offset++;
+    return buffer[pos++];
+  }
+
+  private boolean fill() throws IOException {
+    limit = in.read(buffer, 0, buffer.length);
+    pos = 0;
+    if (limit <= 0) {
+      limit = 0;
+      return false;
+    }
+    return true;
+  }
+
+  private IOException syntaxError(String message) {
+    return new IOException(message + " at character " + offset);
+  }
+}
@@ -27,6 +27,7 @@ import org.sonar.api.rules.RuleFinder;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
 
 import java.io.File;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -64,21 +65,40 @@ public class CxxValgrindSensor extends CxxReportSensor {
     return DEFAULT_REPORT_PATH;
   }
 
+  @Override
+  protected boolean canProcessReportsInParallel() {
+    return true;
+  }
+
   @Override
   protected void processReport(final Project project, final SensorContext context, File report)
       throws javax.xml.stream.XMLStreamException
   {
-    ValgrindReportParser parser = new ValgrindReportParser();
-    saveErrors(project, context, parser.parseReport(report));
+    // errors are saved while parsing; only the distinct ones are kept to
+    // recognize repetitions, which make up most of a typical memcheck report
+    final Set<ValgrindError> seen = new HashSet<ValgrindError>();
+    final String basedir = project.getFileSystem().getBasedir().getPath();
+    new ValgrindReportParser().parseReport(report, new ValgrindReportParser.ErrorHandler() {
+      public void handleError(ValgrindError error) {
+        if (seen.add(error)) {
+          saveError(project, context, basedir, error);
+        }
+      }
+    });
   }
 
   void saveErrors(Project project, SensorContext context, Set<ValgrindError> valgrindErrors) {
+    String basedir = project.getFileSystem().getBasedir().getPath();
     for (ValgrindError error : valgrindErrors) {
-      ValgrindFrame frame = error.getLastOwnFrame(project.getFileSystem().getBasedir().getPath());
-      if (frame != null) {
-        saveViolation(project, context, CxxValgrindRuleRepository.KEY,
-            frame.getPath(), frame.getLine(), error.getKind(), error.toString());
-      }
+      saveError(project, context, basedir, error);
+    }
+  }
+
+  private void saveError(Project project, SensorContext context, String basedir, ValgrindError error) {
+    ValgrindFrame frame = error.getLastOwnFrame(basedir);
+    if (frame != null) {
+      saveViolation(project, context, CxxValgrindRuleRepository.KEY,
+          frame.getPath(), frame.getLine(), error.getKind(), error.toString());
     }
   }
 }
@@ -19,8 +19,6 @@
  */
 package org.sonar.plugins.cxx.valgrind;
 
-import org.apache.commons.lang.builder.HashCodeBuilder;
-
 /**
  * Represents an error found by valgrind. It always has an id,
  * a descriptive text and a stack trace.
@@ -29,6 +27,7 @@ class ValgrindError {
   private String kind;
   private String text;
   private ValgrindStack stack;
+  private long fingerprint;
 
   /**
    * Constructs a ValgrindError out of the given attributes
@@ -40,6 +39,8 @@ class ValgrindError {
     this.kind = kind;
     this.text = text;
     this.stack = stack;
+    this.fingerprint = ValgrindStack.mix(ValgrindStack.mix(ValgrindStack.FNV_OFFSET_BASIS, kind),
+        stack.getFingerprint());
   }
 
   @Override
@@ -56,15 +57,14 @@ class ValgrindError {
       return false;
     }
     ValgrindError other = (ValgrindError) o;
-    return hashCode() == other.hashCode();
+    return fingerprint == other.fingerprint
+      && (kind == null ? other.kind == null : kind.equals(other.kind))
+      && stack.equals(other.stack);
   }
 
   @Override
   public int hashCode() {
-    return new HashCodeBuilder()
-        .append(kind)
-        .append(stack)
-        .toHashCode();
+    return (int) (fingerprint ^ (fingerprint >>> 32));
   }
 
   String getKind() {
@@ -79,7 +79,11 @@ class ValgrindFrame {
       return false;
     }
     ValgrindFrame other = (ValgrindFrame) o;
-    return hashCode() == other.hashCode();
+    return line == other.line
+      && obj.equals(other.obj)
+      && fn.equals(other.fn)
+      && dir.equals(other.dir)
+      && file.equals(other.file);
   }
 
   @Override
@@ -93,6 +97,18 @@ class ValgrindFrame {
         .toHashCode();
   }
 
+  /**
+   * Mixes the attributes which take part in equality into the given
+   * fingerprint, see {@link ValgrindStack#getFingerprint}
+   */
+  long fingerprint(long hash) {
+    hash = ValgrindStack.mix(hash, obj);
+    hash = ValgrindStack.mix(hash, fn);
+    hash = ValgrindStack.mix(hash, dir);
+    hash = ValgrindStack.mix(hash, file);
+    return ValgrindStack.mix(hash, line);
+  }
+
   String getPath() {
     return new File(dir, file).getPath();
   }
@@ -22,12 +22,20 @@ package org.sonar.plugins.cxx.valgrind;
 import org.codehaus.staxmate.in.SMHierarchicCursor;
 import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.utils.StaxParser;
+import org.sonar.plugins.cxx.utils.CxxUtils;
 
 import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
 class ValgrindReportParser {
+  /**
+   * Receives the errors of a report as they are parsed
+   */
+  interface ErrorHandler {
+    void handleError(ValgrindError error);
+  }
+
   public ValgrindReportParser() {
   }
 
@@ -37,13 +45,31 @@ class ValgrindReportParser {
   public Set<ValgrindError> parseReport(File report)
       throws javax.xml.stream.XMLStreamException
   {
-    ValgrindReportStreamHandler streamHandler = new ValgrindReportStreamHandler();
-    new StaxParser(streamHandler).parse(report);
-    return streamHandler.valgrindErrors;
+    final Set<ValgrindError> valgrindErrors = new HashSet<ValgrindError>();
+    parseReport(report, new ErrorHandler() {
+      public void handleError(ValgrindError error) {
+        valgrindErrors.add(error);
+      }
+    });
+    return valgrindErrors;
+  }
+
+  /**
+   * Parses given valgrind report, passing every error to the handler as soon
+   * as it is complete. Duplicates are passed as they occur in the report.
+   */
+  public void parseReport(File report, ErrorHandler handler)
+      throws javax.xml.stream.XMLStreamException
+  {
+    CxxUtils.parseReport(new StaxParser(new ValgrindReportStreamHandler(handler)), report);
   }
 
   private class ValgrindReportStreamHandler implements StaxParser.XmlStreamHandler {
-    Set<ValgrindError> valgrindErrors = new HashSet<ValgrindError>();
+    private final ErrorHandler handler;
+
+    ValgrindReportStreamHandler(ErrorHandler handler) {
+      this.handler = handler;
+    }
 
     /**
      * {@inheritDoc}
@@ -53,7 +79,7 @@ class ValgrindReportParser {
       SMInputCursor errorCursor = rootCursor.childElementCursor("error");
 
       while (errorCursor.getNext() != null) {
-        valgrindErrors.add(parseErrorTag(errorCursor));
+        handler.handleError(parseErrorTag(errorCursor));
       }
     }
   };
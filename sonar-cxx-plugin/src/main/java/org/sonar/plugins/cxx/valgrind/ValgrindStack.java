@@ -19,14 +19,17 @@
  */
 package org.sonar.plugins.cxx.valgrind;
 
-import org.apache.commons.lang.builder.HashCodeBuilder;
-
 import java.util.ArrayList;
 import java.util.List;
 
 /** Represents a call stack, consists basically of a list of frames */
 class ValgrindStack {
+  // 64-bit FNV-1a
+  static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
   private List<ValgrindFrame> frames = new ArrayList<ValgrindFrame>();
+  private long fingerprint = FNV_OFFSET_BASIS;
 
   /**
    * Adds a stack frame to this call stack
@@ -34,6 +37,35 @@ class ValgrindStack {
    */
   public void addFrame(ValgrindFrame frame) {
     frames.add(frame);
+    fingerprint = frame.fingerprint(fingerprint);
+  }
+
+  /**
+   * Returns a 64-bit hash over all frames, maintained while the frames are
+   * added. Equal stacks have equal fingerprints; the opposite is very likely
+   * but not guaranteed, so {@link #equals} compares the frames on a match.
+   */
+  long getFingerprint() {
+    return fingerprint;
+  }
+
+  static long mix(long hash, String value) {
+    long h = hash;
+    if (value != null) {
+      for (int i = 0; i < value.length(); i++) {
+        h = (h ^ value.charAt(i)) * FNV_PRIME;
+      }
+    }
+    // separates consecutive values, so that "ab","c" and "a","bc" differ
+    return (h ^ 0xffff) * FNV_PRIME;
+  }
+
+  static long mix(long hash, long value) {
+    long h = hash;
+    for (int shift = 0; shift < 64; shift += 16) {
+      h = (h ^ ((value >>> shift) & 0xffff)) * FNV_PRIME;
+    }
+    return h;
   }
 
   @Override
@@ -48,11 +80,7 @@ class ValgrindStack {
 
   @Override
   public int hashCode() {
-    HashCodeBuilder builder = new HashCodeBuilder();
-    for (ValgrindFrame frame : frames) {
-      builder.append(frame);
-    }
-    return builder.toHashCode();
+    return (int) (fingerprint ^ (fingerprint >>> 32));
   }
 
   @Override
@@ -64,7 +92,7 @@ class ValgrindStack {
       return false;
     }
     ValgrindStack other = (ValgrindStack) o;
-    return hashCode() == other.hashCode();
+    return fingerprint == other.fingerprint && frames.equals(other.frames);
   }
 
   /**
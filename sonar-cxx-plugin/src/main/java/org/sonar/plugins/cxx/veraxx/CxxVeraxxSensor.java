@@ -19,14 +19,12 @@
  */
 package org.sonar.plugins.cxx.veraxx;
 
-import org.codehaus.staxmate.in.SMHierarchicCursor;
-import org.codehaus.staxmate.in.SMInputCursor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
-import org.sonar.api.utils.StaxParser;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
 import org.sonar.plugins.cxx.utils.CxxUtils;
 
@@ -38,6 +36,10 @@ import java.io.File;
 public class CxxVeraxxSensor extends CxxReportSensor {
   public static final String REPORT_PATH_KEY = "sonar.cxx.vera.reportPath";
   private static final String DEFAULT_REPORT_PATH = "vera++-reports/vera++-result-*.xml";
+  private static final CxxIssueReportFormat FORMAT = CxxIssueReportFormat.of("Vera++")
+      .groupedByFile("file", "name")
+      .issues("error", "line", "source", "message")
+      .ignoringFile("error");
   private RulesProfile profile;
 
   /**
@@ -67,42 +69,17 @@ public class CxxVeraxxSensor extends CxxReportSensor {
     return DEFAULT_REPORT_PATH;
   }
 
+  @Override
+  protected boolean canProcessReportsInParallel() {
+    return true;
+  }
+
   @Override
   protected void processReport(final Project project, final SensorContext context, File report)
       throws javax.xml.stream.XMLStreamException
   {
     try {
-      StaxParser parser = new StaxParser(new StaxParser.XmlStreamHandler() {
-        /**
-         * {@inheritDoc}
-         */
-        public void stream(SMHierarchicCursor rootCursor) throws javax.xml.stream.XMLStreamException {
-          rootCursor.advance();
-
-          SMInputCursor fileCursor = rootCursor.childElementCursor("file");
-          while (fileCursor.getNext() != null) {
-            String name = fileCursor.getAttrValue("name");
-
-            SMInputCursor errorCursor = fileCursor.childElementCursor("error");
-            while (errorCursor.getNext() != null) {
-              if (!name.equals("error")) {
-                int line = Integer.parseInt(errorCursor.getAttrValue("line"));
-                String message = errorCursor.getAttrValue("message");
-                String source = errorCursor.getAttrValue("source");
-
-                saveViolation(project, context, CxxVeraxxRuleRepository.KEY,
-                    name, line, source, message);
-              } else {
-                CxxUtils.LOG.debug("Error in file '{}', with message '{}'",
-                    errorCursor.getAttrValue("line"),
-                    errorCursor.getAttrValue("message"));
-              }
-            }
-          }
-        }
-      });
-
-      parser.parse(report);
+      processIssueReport(project, context, report, FORMAT, CxxVeraxxRuleRepository.KEY);
     } catch (com.ctc.wstx.exc.WstxUnexpectedCharException e) {
       CxxUtils.LOG.error("Ignore XML error from Veraxx '{}'", e.toString());
     }
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.cxx.xunit;
 
+import org.apache.commons.io.IOUtils;
 import org.sonar.api.batch.CoverageExtension;
 import org.sonar.api.batch.DependsUpon;
 import org.sonar.api.batch.SensorContext;
@@ -33,17 +34,24 @@ import org.sonar.plugins.cxx.CxxLanguage;
 import org.sonar.plugins.cxx.utils.CxxReportSensor;
 import org.sonar.plugins.cxx.utils.CxxUtils;
 
+import javax.xml.transform.ErrorListener;
 import javax.xml.transform.OutputKeys;
-import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
 import java.net.URL;
 
 /**
@@ -52,9 +60,14 @@ import java.net.URL;
 public class CxxXunitSensor extends CxxReportSensor {
   public static final String REPORT_PATH_KEY = "sonar.cxx.xunit.reportPath";
   public static final String XSLT_URL_KEY = "sonar.cxx.xunit.xsltURL";
+  public static final String MAX_STACK_TRACE_LENGTH_KEY = "sonar.cxx.xunit.maxStackTraceLength";
+  public static final String MAX_DETAILED_TESTS_KEY = "sonar.cxx.xunit.maxDetailedTests";
+  public static final String FAILURES_ONLY_DETAILS_KEY = "sonar.cxx.xunit.failuresOnlyDetails";
   private static final String DEFAULT_REPORT_PATH = "xunit-reports/xunit-result-*.xml";
   private String xsltURL = null;
   private CxxLanguage lang = null;
+  private Templates templates = null;
+  private Settings conf;
 
   /**
    * {@inheritDoc}
@@ -62,6 +75,7 @@ public class CxxXunitSensor extends CxxReportSensor {
   public CxxXunitSensor(Settings conf, CxxLanguage cxxLang) {
     super(conf);
     this.lang = cxxLang;
+    this.conf = conf;
     xsltURL = conf.getString(XSLT_URL_KEY);
   }
 
@@ -90,7 +104,12 @@ public class CxxXunitSensor extends CxxReportSensor {
       javax.xml.transform.TransformerException,
       javax.xml.stream.XMLStreamException
   {
-    parseReport(project, context, transformReport(report));
+    InputStream input = transformReport(report);
+    try {
+      parseReport(project, context, report, input);
+    } finally {
+      IOUtils.closeQuietly(input);
+    }
   }
 
   @Override
@@ -98,43 +117,121 @@ public class CxxXunitSensor extends CxxReportSensor {
     context.saveMeasure(CoreMetrics.TESTS, 0.0);
   }
 
-  File transformReport(File report)
+  /**
+   * Returns the content of the given report, transformed by the configured
+   * stylesheet if there is one. The transformation runs while its output is
+   * read, so that the report is never held in memory as a whole.
+   */
+  InputStream transformReport(File report)
       throws java.io.IOException, javax.xml.transform.TransformerException
   {
-    File transformed = report;
-    if (xsltURL != null) {
-      CxxUtils.LOG.debug("Transforming the report using xslt '{}'", xsltURL);
+    if (xsltURL == null) {
+      CxxUtils.LOG.debug("Transformation skipped: no xslt given");
+      return CxxUtils.openReport(report);
+    }
+
+    CxxUtils.LOG.debug("Transforming the report using xslt '{}'", xsltURL);
+    Transformer xformer = getTemplates().newTransformer();
+    xformer.setOutputProperty(OutputKeys.INDENT, "yes");
+    // some processors only log errors, e.g. of a malformed report, by default
+    xformer.setErrorListener(new ErrorListener() {
+      public void warning(TransformerException e) {
+        CxxUtils.LOG.warn("Transformation warning: {}", e.getMessageAndLocation());
+      }
+
+      public void error(TransformerException e) throws TransformerException {
+        throw e;
+      }
+
+      public void fatalError(TransformerException e) throws TransformerException {
+        throw e;
+      }
+    });
+    return new TransformedReport(xformer, report);
+  }
+
+  /**
+   * The output of a transformation which runs on a thread of its own and writes
+   * into a pipe; a failure of the transformation is thrown when the end of its
+   * output is read. Closing the stream stops the transformation.
+   */
+  private static final class TransformedReport extends FilterInputStream {
+    private volatile Exception failure;
+
+    TransformedReport(final Transformer xformer, final File report) throws IOException {
+      super(new PipedInputStream());
+      final OutputStream output = new BufferedOutputStream(new PipedOutputStream((PipedInputStream) in));
+      Thread transformation = new Thread(new Runnable() {
+        public void run() {
+          InputStream input = null;
+          try {
+            input = CxxUtils.openReport(report);
+            xformer.transform(new StreamSource(input, report.toURI().toString()), new StreamResult(output));
+          } catch (Exception e) {
+            failure = e;
+          } finally {
+            IOUtils.closeQuietly(input);
+            IOUtils.closeQuietly(output);
+          }
+        }
+      }, "cxx-xunit-transformer");
+      transformation.setDaemon(true);
+      transformation.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+      return checked(super.read());
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return checked(super.read(b, off, len));
+    }
+
+    private int checked(int result) throws IOException {
+      if (result == -1 && failure != null) {
+        IOException e = new IOException("Cannot transform the report: " + failure.getMessage());
+        e.initCause(failure);
+        throw e;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The stylesheet is compiled once per sensor, a Templates object may
+   * create any number of transformers.
+   */
+  private Templates getTemplates()
+      throws java.io.IOException, javax.xml.transform.TransformerException
+  {
+    if (templates == null) {
       InputStream inputStream = this.getClass().getResourceAsStream("/xsl/" + xsltURL);
       if (inputStream == null) {
         URL url = new URL(xsltURL);
         inputStream = url.openStream();
       }
 
-      Source xsl = new StreamSource(inputStream);
-      TransformerFactory factory = TransformerFactory.newInstance();
-      Templates template = factory.newTemplates(xsl);
-      Transformer xformer = template.newTransformer();
-      xformer.setOutputProperty(OutputKeys.INDENT, "yes");
-
-      Source source = new StreamSource(report);
-      transformed = new File(report.getAbsolutePath() + ".after_xslt");
-      Result result = new StreamResult(transformed);
-      xformer.transform(source, result);
-    } else {
-      CxxUtils.LOG.debug("Transformation skipped: no xslt given");
+      try {
+        Source xsl = new StreamSource(inputStream);
+        templates = TransformerFactory.newInstance().newTemplates(xsl);
+      } finally {
+        IOUtils.closeQuietly(inputStream);
+      }
     }
-
-    return transformed;
+    return templates;
   }
 
-  private void parseReport(Project project, SensorContext context, File report)
+  private void parseReport(Project project, SensorContext context, File report, InputStream input)
       throws javax.xml.stream.XMLStreamException
   {
     CxxUtils.LOG.info("Parsing report '{}'", report);
 
-    TestSuiteParser parserHandler = new TestSuiteParser();
+    TestSuiteParser parserHandler = new TestSuiteParser(conf.getInt(MAX_STACK_TRACE_LENGTH_KEY),
+        conf.getInt(MAX_DETAILED_TESTS_KEY), conf.getBoolean(FAILURES_ONLY_DETAILS_KEY));
     StaxParser parser = new StaxParser(parserHandler, false);
-    parser.parse(report);
+    parser.parse(input);
 
     for (TestSuite fileReport : parserHandler.getParsedReports()) {
       String fileKey = fileReport.getKey();
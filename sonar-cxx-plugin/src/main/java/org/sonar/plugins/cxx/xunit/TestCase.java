@@ -85,6 +85,16 @@ public class TestCase {
    */
   public String getDetails() {
     StringBuilder details = new StringBuilder();
+    appendDetails(details, 0);
+    return details.toString();
+  }
+
+  /**
+   * Appends execution details as sonar-conform XML to the given builder
+   * @param maxStackTraceLength the number of characters of the stack trace
+   *        to keep; 0 keeps all of them
+   */
+  void appendDetails(StringBuilder details, int maxStackTraceLength) {
     details.append("<testcase status=\"")
         .append(status)
         .append("\" time=\"")
@@ -98,14 +108,19 @@ public class TestCase {
           .append(StringEscapeUtils.escapeXml(errorMessage))
           .append("\">")
           .append("<![CDATA[")
-          .append(StringEscapeUtils.escapeXml(stackTrace))
+          .append(StringEscapeUtils.escapeXml(truncate(stackTrace, maxStackTraceLength)))
           .append("]]>")
           .append(isError() ? "</error>" : "</failure>")
           .append("</testcase>");
     } else {
       details.append("/>");
     }
+  }
 
-    return details.toString();
+  private static String truncate(String stack, int maxLength) {
+    if (maxLength <= 0 || stack == null || stack.length() <= maxLength) {
+      return stack;
+    }
+    return stack.substring(0, maxLength) + "...";
   }
 }
@@ -19,12 +19,10 @@
  */
 package org.sonar.plugins.cxx.xunit;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
- * Represents a unit test suite. Contains testcases, maintains some statistics.
- * Reports testcase details in sonar-conform XML
+ * Represents a unit test suite. Maintains some statistics over the testcases
+ * and renders their details in sonar-conform XML as they are added, so the
+ * testcases themselves are not kept.
  */
 public class TestSuite {
 
@@ -34,15 +32,32 @@ public class TestSuite {
   private int tests = 0;
   private int time = 0;
   private int failures = 0;
-  private List<TestCase> testCases;
+  private int maxStackTraceLength;
+  private int maxDetailedTestCases;
+  private boolean failuresOnly;
+  private int detailedTestCases = 0;
+  private StringBuilder details = new StringBuilder();
 
   /**
    * Creates a testsuite instance uniquely identified by the given key
    * @param key The key to construct a testsuite for
    */
   public TestSuite(String key) {
+    this(key, 0, 0, false);
+  }
+
+  /**
+   * Creates a testsuite instance whose details are limited as follows
+   * @param key The key to construct a testsuite for
+   * @param maxStackTraceLength Stack traces are cut after this many characters; 0 for no limit
+   * @param maxDetailedTestCases Details are reported for this many testcases; 0 for no limit
+   * @param failuresOnly Report details of erroneous and failed testcases only
+   */
+  public TestSuite(String key, int maxStackTraceLength, int maxDetailedTestCases, boolean failuresOnly) {
     this.key = key;
-    this.testCases = new ArrayList<TestCase>();
+    this.maxStackTraceLength = maxStackTraceLength;
+    this.maxDetailedTestCases = maxDetailedTestCases;
+    this.failuresOnly = failuresOnly;
   }
 
   public String getKey() {
@@ -101,19 +116,23 @@ public class TestSuite {
     }
     tests++;
     time += tc.getTime();
-    testCases.add(tc);
+
+    boolean failed = tc.isError() || tc.isFailure();
+    if ((failed || !failuresOnly)
+      && (maxDetailedTestCases <= 0 || detailedTestCases < maxDetailedTestCases)) {
+      tc.appendDetails(details, maxStackTraceLength);
+      detailedTestCases++;
+    }
   }
 
   /**
    * Returns execution details as sonar-conform XML
    */
   public String getDetails() {
-    StringBuilder details = new StringBuilder();
-    details.append("<tests-details>");
-    for (TestCase tc : testCases) {
-      details.append(tc.getDetails());
-    }
-    details.append("</tests-details>");
-    return details.toString();
+    return new StringBuilder(details.length() + 31)
+        .append("<tests-details>")
+        .append(details)
+        .append("</tests-details>")
+        .toString();
   }
 }
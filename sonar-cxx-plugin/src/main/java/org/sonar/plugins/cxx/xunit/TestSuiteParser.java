@@ -40,6 +40,23 @@ import java.util.Map;
 public class TestSuiteParser implements XmlStreamHandler {
 
   private Map<String, TestSuite> testSuites = new HashMap<String, TestSuite>();
+  private int maxStackTraceLength;
+  private int maxDetailedTestCases;
+  private boolean failuresOnly;
+
+  public TestSuiteParser() {
+    this(0, 0, false);
+  }
+
+  /**
+   * Creates a parser whose test suites limit their details as given,
+   * see {@link TestSuite#TestSuite(String, int, int, boolean)}
+   */
+  public TestSuiteParser(int maxStackTraceLength, int maxDetailedTestCases, boolean failuresOnly) {
+    this.maxStackTraceLength = maxStackTraceLength;
+    this.maxDetailedTestCases = maxDetailedTestCases;
+    this.failuresOnly = failuresOnly;
+  }
 
   /**
    * {@inheritDoc}
@@ -54,7 +71,7 @@ public class TestSuiteParser implements XmlStreamHandler {
         String testClassName = getClassname(testCaseCursor, testSuiteClassName);
         TestSuite report = testSuites.get(testClassName);
         if (report == null) {
-          report = new TestSuite(testClassName);
+          report = new TestSuite(testClassName, maxStackTraceLength, maxDetailedTestCases, failuresOnly);
           testSuites.put(testClassName, report);
         }
         report.addTestCase(parseTestCaseTag(testCaseCursor));
@@ -20,6 +20,8 @@
 package org.sonar.plugins.cxx;
 
 import org.junit.Test;
+import org.sonar.api.CoreProperties;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.ProjectFileSystem;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -34,4 +36,20 @@ public class CxxCpdMappingTest {
     assertThat(mapping.getLanguage()).isSameAs(language);
     assertThat(mapping.getTokenizer()).isInstanceOf(CxxTokenizer.class);
   }
+
+  @Test
+  public void shouldHonourTheLanguageSpecificSkipProperty() {
+    Settings settings = new Settings();
+    assertThat(CxxCpdMapping.isSkipped(settings)).isFalse();
+
+    settings.setProperty("sonar.cpd." + CxxLanguage.KEY + ".skip", true);
+    assertThat(CxxCpdMapping.isSkipped(settings)).isTrue();
+
+    settings.setProperty(CoreProperties.CPD_SKIP_PROPERTY, true);
+    settings.setProperty("sonar.cpd." + CxxLanguage.KEY + ".skip", false);
+    assertThat(CxxCpdMapping.isSkipped(settings)).isFalse();
+
+    settings.removeProperty("sonar.cpd." + CxxLanguage.KEY + ".skip");
+    assertThat(CxxCpdMapping.isSkipped(settings)).isTrue();
+  }
 }
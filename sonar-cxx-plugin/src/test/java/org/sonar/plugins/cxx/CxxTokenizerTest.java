@@ -23,10 +23,15 @@ import net.sourceforge.pmd.cpd.SourceCode;
 import net.sourceforge.pmd.cpd.TokenEntry;
 import net.sourceforge.pmd.cpd.Tokens;
 import org.junit.Test;
+import org.sonar.cxx.CxxAstScanner;
+import org.sonar.cxx.CxxConfiguration;
+import org.sonar.cxx.CxxTokenStore;
 
 import java.io.File;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -44,4 +49,113 @@ public class CxxTokenizerTest {
     assertThat(list.size()).isEqualTo(371);
   }
 
+  @Test
+  public void shouldFoldLiteralsAndIdentifiers() throws URISyntaxException {
+    File file = new File(getClass().getResource("/org/sonar/plugins/cxx/code_chunks.cc").toURI());
+    List<File> files = Collections.emptyList();
+
+    List<String> images = tokenize(new CxxTokenizer(Charset.forName("UTF-8"), true, true, files, 1), file);
+    assertThat(images).hasSize(371);
+    assertThat(images).contains("int:8", CxxTokenizer.IDENTIFIER_IMAGE + ":8", CxxTokenizer.NUMBER_IMAGE + ":18");
+    assertThat(images).excludes("fileno:8", "0xFF:18");
+
+    List<String> literalsOnly = tokenize(new CxxTokenizer(Charset.forName("UTF-8"), true, false, files, 1), file);
+    assertThat(literalsOnly).contains("fileno:8", CxxTokenizer.NUMBER_IMAGE + ":18");
+  }
+
+  @Test
+  public void shouldGiveTheSameTokensWhenLexingAhead() {
+    List<File> files = new ArrayList<File>();
+    for (String name : new String[] {"application/main.cpp", "tests/SAMPLE-test.cpp", "tests/SAMPLE-test.h",
+      "tests/main.cpp", "utils/code_chunks.cpp", "utils/utils.cpp"}) {
+      files.add(TestUtils.loadResource("/org/sonar/plugins/cxx/SampleProject/sources/" + name));
+    }
+    CxxTokenizer sequential = new CxxTokenizer(Charset.forName("UTF-8"));
+    CxxTokenizer parallel = new CxxTokenizer(Charset.forName("UTF-8"), false, false, files, 3);
+
+    // the engine may skip files or ask for them in another order
+    int[] order = {0, 2, 1, 3, 5, 4};
+    for (int i : order) {
+      assertThat(tokenize(parallel, files.get(i))).isEqualTo(tokenize(sequential, files.get(i)));
+    }
+  }
+
+  @Test
+  public void shouldEndTheIdleThreadsWhenTheEngineStopsEarly() throws InterruptedException {
+    List<File> files = new ArrayList<File>();
+    for (String name : new String[] {"application/main.cpp", "tests/SAMPLE-test.cpp", "tests/SAMPLE-test.h",
+      "tests/main.cpp", "utils/code_chunks.cpp", "utils/utils.cpp"}) {
+      files.add(TestUtils.loadResource("/org/sonar/plugins/cxx/SampleProject/sources/" + name));
+    }
+    CxxTokenizer tokenizer = new CxxTokenizer(Charset.forName("UTF-8"), false, false, files, 2);
+
+    // the last file is never asked for, so the pool is not shut down
+    tokenize(tokenizer, files.get(0));
+
+    long deadline = System.currentTimeMillis() + 5 * 1000 * CxxTokenizer.KEEP_ALIVE_SECONDS;
+    while (tokenizerThreads() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100);
+    }
+    assertThat(tokenizerThreads()).isEqualTo(0);
+  }
+
+  private static int tokenizerThreads() {
+    int count = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if ("cxx-cpd-tokenizer".equals(thread.getName()) && thread.isAlive()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void shouldGiveTheSameTokensFromTheTokenStore() {
+    List<File> files = new ArrayList<File>();
+    for (String name : new String[] {"application/main.cpp", "utils/code_chunks.cpp", "utils/utils.cpp"}) {
+      files.add(TestUtils.loadResource("/org/sonar/plugins/cxx/SampleProject/sources/" + name));
+    }
+    // the identifier 'EOF' has the image of the end of file tokens recorded before
+    files.add(TestUtils.loadResource("/org/sonar/plugins/cxx/cpd/eof.cc"));
+    CxxTokenStore store = new CxxTokenStore();
+    CxxConfiguration conf = new CxxConfiguration(Charset.forName("UTF-8"));
+    conf.setTokenStore(store);
+    CxxAstScanner.create(conf).scanFiles(files);
+    List<File> noFiles = Collections.emptyList();
+    CxxTokenizer lexing = new CxxTokenizer(Charset.forName("UTF-8"), true, true, noFiles, 1);
+    CxxTokenizer fromStore = new CxxTokenizer(Charset.forName("UTF-8"), true, true, noFiles, 1, store);
+
+    for (File file : files) {
+      assertThat(store.contains(file.getAbsolutePath())).isTrue();
+      assertThat(tokenize(fromStore, file)).isEqualTo(tokenize(lexing, file));
+    }
+    assertThat(store.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void shouldCloseAnEmptyTokenStore() throws URISyntaxException {
+    File file = new File(getClass().getResource("/org/sonar/plugins/cxx/code_chunks.cc").toURI());
+    CxxTokenStore store = new CxxTokenStore();
+    CxxTokenizer tokenizer = new CxxTokenizer(Charset.forName("UTF-8"), false, false,
+        Collections.<File>emptyList(), 1, store);
+
+    assertThat(tokenize(tokenizer, file)).hasSize(371);
+
+    // files scanned after the copy-paste detection has started are not recorded
+    CxxConfiguration conf = new CxxConfiguration(Charset.forName("UTF-8"));
+    conf.setTokenStore(store);
+    CxxAstScanner.create(conf).scanFiles(Collections.singletonList(file));
+    assertThat(store.isEmpty()).isTrue();
+  }
+
+  private static List<String> tokenize(CxxTokenizer tokenizer, File file) {
+    Tokens cpdTokens = new Tokens();
+    tokenizer.tokenize(new SourceCode(new SourceCode.FileCodeLoader(file, "key")), cpdTokens);
+    List<String> images = new ArrayList<String>();
+    for (TokenEntry token : cpdTokens.getTokens()) {
+      images.add(token.getValue() + ":" + token.getBeginLine());
+    }
+    return images;
+  }
+
 }
@@ -17,18 +17,19 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.plugins.cxx.rfc;
+package org.sonar.plugins.cxx.clangtidy;
 
-import org.sonar.api.batch.SensorContext;
-import org.sonar.api.resources.InputFile;
-import org.sonar.api.resources.Project;
-import org.sonar.plugins.cxx.utils.CxxFileSensor;
+import org.junit.Test;
+import org.sonar.api.platform.ServerFileSystem;
+import org.sonar.api.rules.XMLRuleParser;
 
-public class CxxRfcSensor extends CxxFileSensor {
-  @Override
-  protected void parseFile(InputFile file, Project project, SensorContext context) {
-    // TODO: implement using SSLR. Its probably a good idea to look for exising
-    // SSLR based implementations for other languages. Use git to go back to look at
-    // the CDT based implementation, if necessary
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class CxxClangTidyRuleRepositoryTest {
+  @Test
+  public void shouldContainProperNumberOfRules() {
+    CxxClangTidyRuleRepository repo = new CxxClangTidyRuleRepository(mock(ServerFileSystem.class), new XMLRuleParser());
+    assertEquals(repo.createRules().size(), 21);
   }
 }
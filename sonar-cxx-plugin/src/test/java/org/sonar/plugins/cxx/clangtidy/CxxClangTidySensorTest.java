@@ -0,0 +1,99 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.clangtidy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.resources.File;
+import org.sonar.api.resources.Project;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.Violation;
+import org.sonar.plugins.cxx.TestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CxxClangTidySensorTest {
+  private SensorContext context;
+  private Project project;
+  private RuleFinder ruleFinder;
+  private Settings settings;
+
+  @Before
+  public void setUp() {
+    project = TestUtils.mockProject();
+    ruleFinder = TestUtils.mockRuleFinder();
+    settings = new Settings();
+    context = mock(SensorContext.class);
+    File resourceMock = mock(File.class);
+    when(context.getResource((File) anyObject())).thenReturn(resourceMock);
+  }
+
+  @Test
+  public void shouldReportCorrectViolations() {
+    CxxClangTidySensor sensor = new CxxClangTidySensor(ruleFinder, settings, mock(RulesProfile.class));
+    sensor.analyse(project, context);
+    verify(context, times(4)).saveViolation(any(Violation.class));
+  }
+
+  @Test
+  public void shouldReadSarifResults() {
+    settings.setProperty(CxxClangTidySensor.REPORT_PATH_KEY, "clangtidy-reports/clangtidy-result-SAMPLE.sarif");
+    CxxClangTidySensor sensor = new CxxClangTidySensor(ruleFinder, settings, mock(RulesProfile.class));
+    sensor.analyse(project, context);
+
+    assertThat(savedViolations(2)).containsExactly(
+        "20: Dereference of null pointer (loaded from variable 'p')",
+        "7: Value stored to 'x' is never read");
+  }
+
+  @Test
+  public void shouldLocateExportedFixesByOffset() {
+    settings.setProperty(CxxClangTidySensor.REPORT_PATH_KEY, "clangtidy-reports/clangtidy-result-SAMPLE.yaml");
+    CxxClangTidySensor sensor = new CxxClangTidySensor(ruleFinder, settings, mock(RulesProfile.class));
+    sensor.analyse(project, context);
+
+    assertThat(savedViolations(2)).containsExactly(
+        "8: C-style casts are discouraged; use static_cast",
+        "13: statement should be inside braces; the 'if' has no body");
+  }
+
+  private List<String> savedViolations(int count) {
+    ArgumentCaptor<Violation> captor = ArgumentCaptor.forClass(Violation.class);
+    verify(context, times(count)).saveViolation(captor.capture());
+    List<String> violations = new ArrayList<String>();
+    for (Violation violation : captor.getAllValues()) {
+      violations.add(violation.getLineId() + ": " + violation.getMessage());
+    }
+    return violations;
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.clangtidy;
+
+import org.junit.Test;
+import org.sonar.plugins.cxx.TestUtils;
+import org.sonar.plugins.cxx.utils.CxxIssueReportFormat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class SarifParserTest {
+  private final List<String> issues = new ArrayList<String>();
+  private final List<String> messages = new ArrayList<String>();
+  private final CxxIssueReportFormat.IssueHandler handler = new CxxIssueReportFormat.IssueHandler() {
+    public void handleIssue(String file, int line, String id, String msg) {
+      issues.add(file + ":" + line + ":" + id);
+      messages.add(msg);
+    }
+  };
+
+  @Test
+  public void shouldResolveRulesAndUriBaseIds() throws IOException {
+    new SarifParser().parse(TestUtils.loadResource("/org/sonar/plugins/cxx/clangtidy-reports/clangtidy-result-SAMPLE.sarif"),
+        handler);
+
+    assertThat(issues).containsExactly(
+        "sources/utils/code_chunks.cpp:20:clang-analyzer-core.NullDereference",
+        "/tmp/sources/utils/utils.cpp:7:clang-analyzer-deadcode.DeadStores");
+  }
+
+  @Test
+  public void shouldResolveRulesAndUriBaseIdsFollowingTheResults() throws IOException {
+    new SarifParser().parse(
+        TestUtils.loadResource("/org/sonar/plugins/cxx/clangtidy-reports/clangtidy-result-results-first.sarif"),
+        handler);
+
+    assertThat(issues).containsExactly(
+        "sources/utils/code_chunks.cpp:20:clang-analyzer-core.NullDereference",
+        "/tmp/sources/utils/utils.cpp:7:clang-analyzer-deadcode.DeadStores");
+  }
+
+  @Test
+  public void shouldPassResultsOnBeforeTheRunEnds() {
+    // the log is cut off within the run, which has no uri base ids
+    try {
+      new SarifParser().parse(
+          TestUtils.loadResource("/org/sonar/plugins/cxx/clangtidy-reports/clangtidy-truncated.sarif"),
+          handler);
+      fail("The truncated log has been read");
+    } catch (IOException e) {
+      assertThat(issues).containsExactly(
+          "sources/utils/code_chunks.cpp:20:clang-analyzer-core.NullDereference",
+          "sources/utils/utils.cpp:7:clang-analyzer-deadcode.DeadStores");
+    }
+  }
+
+  @Test
+  public void shouldReportFailuresInEffectWithTheirMessages() throws IOException {
+    new SarifParser().parse(TestUtils.loadResource("/org/sonar/plugins/cxx/clangtidy-reports/clangtidy-messages.sarif"),
+        handler);
+
+    assertThat(issues).containsExactly(
+        "sources/utils/utils.cpp:7:clang-analyzer-deadcode.DeadStores",
+        "sources/utils/utils.cpp:11:clang-analyzer-deadcode.DeadStores");
+    assertThat(messages).containsExactly("Value stored to 'x' is never read", "Suppression rejected");
+  }
+}
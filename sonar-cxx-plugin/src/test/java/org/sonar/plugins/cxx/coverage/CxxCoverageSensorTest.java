@@ -21,14 +21,26 @@ package org.sonar.plugins.cxx.coverage;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.CoverageMeasuresBuilder;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
+import org.sonar.plugins.cxx.CxxPlugin;
 import org.sonar.plugins.cxx.TestUtils;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -45,8 +57,13 @@ public class CxxCoverageSensorTest {
     project = TestUtils.mockProject();
     sensor = new CxxCoverageSensor(new Settings());
     context = mock(SensorContext.class);
-    File resourceMock = mock(File.class);
-    when(context.getResource((File) anyObject())).thenReturn(resourceMock);
+    // every file is indexed; the paths are resolved once per normalized path,
+    // so every distinct file gets its own resource
+    when(context.getResource((File) anyObject())).thenAnswer(new Answer<File>() {
+      public File answer(InvocationOnMock invocation) {
+        return mock(File.class);
+      }
+    });
   }
 
   @Test
@@ -61,4 +78,123 @@ public class CxxCoverageSensorTest {
     sensor.analyse(project, context);
     verify(context, times(0)).saveMeasure((File) anyObject(), any(Measure.class));
   }
+
+  @Test
+  public void shouldSumHitsOfReportsForTheSameFile() {
+    Settings settings = new Settings();
+    settings.setProperty(CxxCoverageSensor.REPORT_PATH_KEY, "coverage-reports/merge/coverage-*.xml");
+    settings.setProperty(CxxCoverageSensor.IT_REPORT_PATH_KEY, "none");
+    settings.setProperty(CxxCoverageSensor.OVERALL_REPORT_PATH_KEY, "none");
+    settings.setProperty(CxxPlugin.REPORT_THREADS_KEY, "2");
+    sensor = new CxxCoverageSensor(settings);
+
+    sensor.analyse(project, context);
+
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(context, times(7)).saveMeasure((File) anyObject(), captor.capture());
+    Map<String, Measure> measures = new HashMap<String, Measure>();
+    for (Measure measure : captor.getAllValues()) {
+      measures.put(measure.getMetricKey(), measure);
+    }
+    assertThat(measures.get(CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY).getData()).isEqualTo("1=3;2=0;3=4;4=5");
+    assertThat(measures.get(CoreMetrics.UNCOVERED_LINES_KEY).getValue()).isEqualTo(1.0);
+    assertThat(measures.get(CoreMetrics.CONDITIONS_BY_LINE_KEY).getData()).isEqualTo("3=2");
+    assertThat(measures.get(CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY).getData()).isEqualTo("3=2");
+  }
+
+  @Test
+  public void shouldSumHitsOfDifferentSpellingsOfTheSameFile() {
+    Settings settings = new Settings();
+    settings.setProperty(CxxCoverageSensor.REPORT_PATH_KEY, "coverage-reports/merge-spellings/coverage-*.xml");
+    settings.setProperty(CxxCoverageSensor.IT_REPORT_PATH_KEY, "none");
+    settings.setProperty(CxxCoverageSensor.OVERALL_REPORT_PATH_KEY, "none");
+    sensor = new CxxCoverageSensor(settings);
+
+    sensor.analyse(project, context);
+
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(context, times(7)).saveMeasure((File) anyObject(), captor.capture());
+    for (Measure measure : captor.getAllValues()) {
+      if (CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY.equals(measure.getMetricKey())) {
+        assertThat(measure.getData()).isEqualTo("1=3;2=0;3=4;4=5");
+      }
+    }
+  }
+
+  @Test
+  public void shouldDetectReportFormatsFromTheRootElement() {
+    ReportHeader cobertura = ReportHeader.read(TestUtils.loadResource("/org/sonar/plugins/cxx/coverage-reports/coverage-result-cobertura.xml"));
+    ReportHeader bullseye = ReportHeader.read(TestUtils.loadResource("/org/sonar/plugins/cxx/coverage-reports/coverage-result-bullseye.xml"));
+    ReportHeader invalid = ReportHeader.read(TestUtils.loadResource("/org/sonar/plugins/cxx/coverage-reports/coverage-result-invalid.xml"));
+
+    assertThat(new CoberturaParser().canParse(cobertura)).isTrue();
+    assertThat(new CoberturaParser().canParse(bullseye)).isFalse();
+    assertThat(new BullseyeParser().canParse(bullseye)).isTrue();
+    assertThat(new BullseyeParser().canParse(cobertura)).isFalse();
+    assertThat(invalid.getRootElement()).isNull();
+  }
+
+  @Test
+  public void shouldDetectReportsStartingWithAByteOrderMark() {
+    ReportHeader header = ReportHeader.read(TestUtils.loadResource("/org/sonar/plugins/cxx/coverage-reports/bom-cobertura.xml"));
+
+    assertThat(header.getRootElement()).isEqualTo("coverage");
+    assertThat(header.getPrefix()).startsWith("<?xml");
+    assertThat(new CoberturaParser().canParse(header)).isTrue();
+  }
+
+  @Test
+  public void shouldDetectUtf16Reports() {
+    for (String name : new String[] {"utf16-bom-cobertura.xml", "utf16be-cobertura.xml"}) {
+      ReportHeader header = ReportHeader.read(TestUtils.loadResource("/org/sonar/plugins/cxx/coverage-reports/" + name));
+
+      assertThat(header.getRootElement()).isEqualTo("coverage");
+      assertThat(header.getPrefix()).startsWith("<?xml");
+      assertThat(new CoberturaParser().canParse(header)).isTrue();
+    }
+  }
+
+  @Test
+  public void shouldUseTheGivenParsers() throws Exception {
+    CoverageParser parser = mock(CoverageParser.class);
+    sensor = new CxxCoverageSensor(new Settings(), Arrays.asList(parser));
+
+    sensor.analyse(project, context);
+
+    // all reports found by the default report paths
+    verify(parser, times(8)).canParse((ReportHeader) anyObject());
+    verify(parser, times(0)).parseReport((java.io.File) anyObject(), anyMap());
+  }
+
+  @Test
+  public void shouldParseGcovJsonReports() throws Exception {
+    java.io.File report = TestUtils.loadResource("/org/sonar/plugins/cxx/coverage-reports/gcov-result.gcov.json.gz");
+    GcovJsonParser parser = new GcovJsonParser();
+    assertThat(parser.canParse(ReportHeader.read(report))).isTrue();
+
+    Map<String, FileCoverage> coverage = new HashMap<String, FileCoverage>();
+    parser.parseReport(report, coverage);
+
+    CoverageMeasuresBuilder builder = coverage.get(new java.io.File("/home/user/SampleProject", "sources/utils/code_chunks.cpp").getPath()).toBuilder();
+    assertThat(builder.getHitsByLine().toString()).isEqualTo("{3=2, 4=2, 5=0}");
+    assertThat(builder.getConditionsByLine().toString()).isEqualTo("{4=2}");
+    assertThat(builder.getCoveredConditionsByLine().toString()).isEqualTo("{4=1}");
+    assertThat(coverage.get("/usr/include/c++/10/iostream").toBuilder().getHitsByLine().toString()).isEqualTo("{74=1}");
+  }
+
+  @Test
+  public void shouldParseLlvmCovExportReports() throws Exception {
+    java.io.File report = TestUtils.loadResource("/org/sonar/plugins/cxx/coverage-reports/llvm-cov-result.json");
+    LlvmCovParser parser = new LlvmCovParser();
+    assertThat(parser.canParse(ReportHeader.read(report))).isTrue();
+    assertThat(new GcovJsonParser().canParse(ReportHeader.read(report))).isFalse();
+
+    Map<String, FileCoverage> coverage = new HashMap<String, FileCoverage>();
+    parser.parseReport(report, coverage);
+
+    CoverageMeasuresBuilder builder = coverage.get("/home/user/SampleProject/sources/utils/code_chunks.cpp").toBuilder();
+    assertThat(builder.getHitsByLine().toString()).isEqualTo("{3=2, 4=2, 5=2, 6=0}");
+    assertThat(builder.getConditionsByLine().toString()).isEqualTo("{4=2}");
+    assertThat(builder.getCoveredConditionsByLine().toString()).isEqualTo("{4=1}");
+  }
 }
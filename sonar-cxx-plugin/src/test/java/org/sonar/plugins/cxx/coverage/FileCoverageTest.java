@@ -0,0 +1,113 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.coverage;
+
+import org.junit.Test;
+import org.sonar.api.measures.CoverageMeasuresBuilder;
+import org.sonar.api.measures.Measure;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileCoverageTest {
+
+  @Test
+  public void setShouldKeepTheFirstValueOfALine() {
+    FileCoverage coverage = new FileCoverage();
+    coverage.setHits(3, 2);
+    coverage.setHits(3, 5);
+    coverage.setConditions(3, 2, 1);
+    coverage.setConditions(3, 4, 4);
+    coverage.setConditions(7, 0, 0);
+
+    CoverageMeasuresBuilder builder = coverage.toBuilder();
+    assertThat(builder.getHitsByLine().toString()).isEqualTo("{3=2}");
+    assertThat(builder.getConditionsByLine().toString()).isEqualTo("{3=2}");
+    assertThat(builder.getCoveredConditionsByLine().toString()).isEqualTo("{3=1}");
+  }
+
+  @Test
+  public void addShouldSumHitsAndKeepTheBestConditionCoverage() {
+    FileCoverage coverage = new FileCoverage();
+    coverage.setHits(3, 2);
+    coverage.setConditions(3, 2, 1);
+
+    FileCoverage other = new FileCoverage();
+    other.setHits(3, 1);
+    other.setHits(100000, 0);
+    other.setConditions(3, 2, 2);
+    coverage.add(other);
+
+    assertThat(coverage.getHits(3)).isEqualTo(3);
+    assertThat(coverage.getHits(100000)).isEqualTo(0);
+    assertThat(coverage.getConditions(3)).isEqualTo(2);
+    assertThat(coverage.getCoveredConditions(3)).isEqualTo(2);
+    assertThat(coverage.toBuilder().getHitsByLine().toString()).isEqualTo("{3=3, 100000=0}");
+  }
+
+  @Test
+  public void addShouldNotOverflowTheHits() {
+    FileCoverage coverage = new FileCoverage();
+    coverage.setHits(3, Integer.MAX_VALUE);
+    coverage.addHits(3, 5);
+    coverage.addHits(3, Integer.MAX_VALUE);
+
+    assertThat(coverage.getHits(3)).isEqualTo(Integer.MAX_VALUE);
+  }
+
+  @Test
+  public void shouldCreateTheMeasuresOfCoverageMeasuresBuilder() {
+    FileCoverage coverage = new FileCoverage();
+    assertThat(coverage.createMeasures()).isEmpty();
+
+    coverage.setHits(0, 1);
+    coverage.setHits(3, 2);
+    coverage.setHits(4, 0);
+    coverage.setHits(1000, 5);
+    assertThat(describe(coverage.createMeasures())).isEqualTo(describe(coverage.toBuilder().createMeasures()));
+
+    coverage.setConditions(3, 2, 1);
+    coverage.setConditions(4, 4, 0);
+    assertThat(describe(coverage.createMeasures())).isEqualTo(describe(coverage.toBuilder().createMeasures()));
+  }
+
+  private static List<String> describe(Collection<Measure> measures) {
+    List<String> result = new ArrayList<String>();
+    for (Measure measure : measures) {
+      result.add(measure.getMetricKey() + ":" + measure.getValue() + ":" + measure.getData() + ":"
+        + measure.getPersistenceMode());
+    }
+    return result;
+  }
+
+  @Test
+  public void shouldIgnoreNegativeLines() {
+    FileCoverage coverage = new FileCoverage();
+    coverage.setHits(-1, 1);
+    coverage.addHits(-1, 1);
+    coverage.setConditions(-1, 2, 1);
+
+    assertThat(coverage.toBuilder().getHitsByLine()).isEmpty();
+    assertThat(coverage.getConditions(0)).isEqualTo(-1);
+  }
+}
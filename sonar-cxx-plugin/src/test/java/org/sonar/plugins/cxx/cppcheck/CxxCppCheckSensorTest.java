@@ -28,6 +28,7 @@ import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.rules.Violation;
+import org.sonar.api.utils.SonarException;
 import org.sonar.plugins.cxx.TestUtils;
 
 import static org.mockito.Matchers.any;
@@ -58,4 +59,21 @@ public class CxxCppCheckSensorTest {
     sensor.analyse(project, context);
     verify(context, times(2)).saveViolation(any(Violation.class));
   }
+
+  @Test
+  public void shouldReadCompressedReports() {
+    Settings settings = new Settings();
+    settings.setProperty(CxxCppCheckSensor.REPORT_PATH_KEY, "cppcheck-reports/cppcheck-result-SAMPLE.xml.gz");
+    sensor = new CxxCppCheckSensor(TestUtils.mockRuleFinder(), settings, mock(RulesProfile.class));
+    sensor.analyse(project, context);
+    verify(context, times(2)).saveViolation(any(Violation.class));
+  }
+
+  @Test(expected = SonarException.class)
+  public void shouldFailOnZstdCompressedReports() {
+    Settings settings = new Settings();
+    settings.setProperty(CxxCppCheckSensor.REPORT_PATH_KEY, "cppcheck-reports/cppcheck-result-zstd.xml.zst");
+    sensor = new CxxCppCheckSensor(TestUtils.mockRuleFinder(), settings, mock(RulesProfile.class));
+    sensor.analyse(project, context);
+  }
 }
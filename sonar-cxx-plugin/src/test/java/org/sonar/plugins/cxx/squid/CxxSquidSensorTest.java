@@ -153,4 +153,52 @@ public class CxxSquidSensorTest {
     verify(context, times(2)).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.NCLOC), eq(1.0));
   }
 
+  @Test
+  public void testRfc() {
+    List<File> sourceDirs = new ArrayList<File>();
+    List<File> testDirs = new ArrayList<File>();
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx/rfc");
+    sourceDirs.add(baseDir);
+    Project project = TestUtils.mockProject(baseDir, sourceDirs, testDirs);
+
+    sensor.analyse(project, context);
+
+    verify(context).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.RFC), eq(8.0)); // RfcClass.cpp
+    verify(context, times(4)).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.RFC), eq(2.0)); // AncestorClass, UsedClass (.cpp and .h)
+    verify(context).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.RFC), eq(4.0)); // RfcClass.h
+  }
+
+  @Test
+  public void testCohesion() {
+    List<File> sourceDirs = new ArrayList<File>();
+    List<File> testDirs = new ArrayList<File>();
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx/cohesion");
+    sourceDirs.add(baseDir);
+    Project project = TestUtils.mockProject(baseDir, sourceDirs, testDirs);
+
+    sensor.analyse(project, context);
+
+    verify(context).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.LCOM4), eq(0.0)); // NoMethodsClass.cpp
+    verify(context).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.LCOM4), eq(1.0)); // IdealCohesion.cpp
+    verify(context).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.LCOM4), eq(2.0)); // LowCohesion.cpp
+    verify(context).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.LCOM4), eq(3.0)); // Driver.cpp
+    verify(context).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.LCOM4), eq(5.0)); // HighCohesion.cpp
+  }
+
+  @Test
+  public void testScanningInBatches() {
+    settings.setProperty(CxxPlugin.SCAN_BATCH_SIZE_KEY, 1);
+
+    List<File> sourceDirs = new ArrayList<File>();
+    List<File> testDirs = new ArrayList<File>();
+    File baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx/squid/circular_includes");
+    sourceDirs.add(baseDir);
+    Project project = TestUtils.mockProject(baseDir, sourceDirs, testDirs);
+
+    sensor.analyse(project, context);
+
+    verify(context, times(2)).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.FILES), eq(1.0));
+    verify(context, times(2)).saveMeasure((org.sonar.api.resources.File) anyObject(), eq(CoreMetrics.NCLOC), eq(1.0));
+  }
+
 }
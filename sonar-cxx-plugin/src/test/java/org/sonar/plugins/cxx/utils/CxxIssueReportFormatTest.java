@@ -0,0 +1,79 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.utils;
+
+import org.junit.Test;
+import org.sonar.plugins.cxx.TestUtils;
+
+import javax.xml.stream.XMLStreamException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CxxIssueReportFormatTest {
+  private final List<String> issues = new ArrayList<String>();
+  private final CxxIssueReportFormat.IssueHandler handler = new CxxIssueReportFormat.IssueHandler() {
+    public void handleIssue(String file, int line, String id, String msg) {
+      issues.add(file + ":" + line + ":" + id);
+    }
+  };
+
+  @Test
+  public void shouldReadIssuesGroupedByFile() throws XMLStreamException {
+    CxxIssueReportFormat.of("Vera++")
+        .groupedByFile("file", "name")
+        .issues("error", "line", "source", "message")
+        .parse(TestUtils.loadResource("/org/sonar/plugins/cxx/vera++-reports/vera++-result-SAMPLE.xml"), handler);
+
+    assertThat(issues).contains("sources/application/main.cpp:1:T013");
+  }
+
+  @Test
+  public void shouldSkipIncompleteIssues() throws XMLStreamException {
+    CxxIssueReportFormat.of("External rules")
+        .issues("error", "file", "line", "id", "msg")
+        .parse(TestUtils.loadResource("/org/sonar/plugins/cxx/externalrules-reports/externalrules-result-invalid.xml"),
+            handler);
+
+    assertThat(issues).containsExactly("sources/utils/utils.cpp:1:cxxexternal-unusedFunction");
+  }
+
+  @Test(expected = XMLStreamException.class)
+  public void shouldFailOnIncompleteIssuesWhenStrict() throws XMLStreamException {
+    CxxIssueReportFormat.of("External rules")
+        .issues("error", "file", "line", "id", "msg")
+        .strict()
+        .parse(TestUtils.loadResource("/org/sonar/plugins/cxx/externalrules-reports/externalrules-result-invalid.xml"),
+            handler);
+  }
+
+  @Test
+  public void shouldSkipIssuesWithoutMessageOrIdWhenStrict() throws XMLStreamException {
+    CxxIssueReportFormat.of("External rules")
+        .issues("error", "file", "line", "id", "msg")
+        .strict()
+        .parse(TestUtils.loadResource("/org/sonar/plugins/cxx/externalrules-reports/externalrules-result-nomsg.xml"),
+            handler);
+
+    assertThat(issues).containsExactly("sources/utils/utils.cpp:1:cxxexternal-unusedFunction");
+  }
+}
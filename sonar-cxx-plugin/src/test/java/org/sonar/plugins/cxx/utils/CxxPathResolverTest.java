@@ -0,0 +1,125 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.plugins.cxx.CxxPlugin;
+import org.sonar.plugins.cxx.TestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CxxPathResolverTest {
+  private static final List<String> INDEXED = Arrays.asList("code_chunks.cpp", "utils.cpp");
+
+  private Project project;
+  private SensorContext context;
+  private String baseDir;
+
+  @Before
+  public void setUp() {
+    project = TestUtils.mockProject();
+    baseDir = project.getFileSystem().getBasedir().getAbsolutePath().replace('\\', '/');
+    context = mock(SensorContext.class);
+    when(context.getResource(any(Resource.class))).thenAnswer(new Answer<Resource>() {
+      public Resource answer(InvocationOnMock invocation) {
+        Resource resource = (Resource) invocation.getArguments()[0];
+        return resource != null && INDEXED.contains(resource.getKey()) ? resource : null;
+      }
+    });
+  }
+
+  @Test
+  public void shouldNormalizePaths() {
+    CxxPathResolver resolver = new CxxPathResolver(project, context, new Settings());
+
+    assertThat(resolver.normalize("SampleProject/sources/utils/code_chunks.cpp"))
+        .isEqualTo(baseDir + "/SampleProject/sources/utils/code_chunks.cpp");
+    assertThat(resolver.normalize("SampleProject\\sources\\tests\\..\\utils\\.\\code_chunks.cpp"))
+        .isEqualTo(baseDir + "/SampleProject/sources/utils/code_chunks.cpp");
+    assertThat(resolver.normalize("/usr/include/../include/stdio.h")).isEqualTo("/usr/include/stdio.h");
+    assertThat(resolver.normalize("C:\\build\\src\\main.cpp")).isEqualTo("C:/build/src/main.cpp");
+    assertThat(resolver.normalize("/../stdio.h")).isNull();
+  }
+
+  @Test
+  public void shouldRewriteBuildMachinePrefixes() {
+    Settings settings = new Settings();
+    settings.setProperty(CxxPlugin.PATH_REWRITES_KEY,
+        "C:\\jenkins\\workspace\\=SampleProject/sources, /home/build/project=" + baseDir + "/SampleProject");
+    CxxPathResolver resolver = new CxxPathResolver(project, context, settings);
+
+    assertThat(resolver.normalize("C:\\jenkins\\workspace\\utils\\code_chunks.cpp"))
+        .isEqualTo(baseDir + "/SampleProject/sources/utils/code_chunks.cpp");
+    assertThat(resolver.normalize("/home/build/project/sources/utils/code_chunks.cpp"))
+        .isEqualTo(baseDir + "/SampleProject/sources/utils/code_chunks.cpp");
+    assertThat(resolver.normalize("/home/build/project2/main.cpp")).isEqualTo("/home/build/project2/main.cpp");
+
+    assertThat(resolver.resolve("C:\\jenkins\\workspace\\utils\\code_chunks.cpp").getKey()).isEqualTo("code_chunks.cpp");
+  }
+
+  @Test
+  public void shouldLookUpEveryFileOnce() {
+    CxxPathResolver resolver = new CxxPathResolver(project, context, new Settings());
+
+    String[] spellings = {
+      "SampleProject/sources/utils/code_chunks.cpp",
+      baseDir + "/SampleProject/sources/utils/code_chunks.cpp",
+      "SampleProject\\sources\\application\\..\\utils\\code_chunks.cpp",
+      "SampleProject/sources/utils/code_chunks.cpp"
+    };
+    for (String spelling : spellings) {
+      assertThat(resolver.resolve(spelling).getKey()).isEqualTo("code_chunks.cpp");
+    }
+
+    verify(context, times(1)).getResource(any(Resource.class));
+    assertThat(resolver.getLookups()).isEqualTo(4);
+    assertThat(resolver.getCacheHits()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldCountUnresolvedPaths() {
+    CxxPathResolver resolver = new CxxPathResolver(project, context, new Settings());
+
+    assertThat(resolver.resolve("/usr/include/stdio.h")).isNull();
+    assertThat(resolver.resolve("/usr/include/stdio.h")).isNull();
+    assertThat(resolver.resolve("SampleProject/sources/utils/missing.cpp")).isNull();
+    assertThat(resolver.resolve("SampleProject/sources/utils/utils.cpp")).isNotNull();
+
+    assertThat(resolver.getUnresolved()).hasSize(2);
+    assertThat(resolver.getUnresolved().get("/usr/include/stdio.h")).isEqualTo(2);
+    assertThat(resolver.getUnresolved().get("SampleProject/sources/utils/missing.cpp")).isEqualTo(1);
+    resolver.logStatistics();
+  }
+}
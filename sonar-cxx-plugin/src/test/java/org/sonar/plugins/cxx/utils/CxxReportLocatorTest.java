@@ -0,0 +1,168 @@
+/*
+ * Sonar C++ Plugin (Community)
+ * Copyright (C) 2010 Neticoa SAS France
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.cxx.utils;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+import org.sonar.plugins.cxx.TestUtils;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class CxxReportLocatorTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String baseDir;
+  private Settings settings;
+  private CxxReportLocator locator;
+
+  @Before
+  public void setUp() {
+    baseDir = TestUtils.loadResource("/org/sonar/plugins/cxx").getPath();
+    settings = new Settings();
+    locator = CxxReportLocator.forSettings(settings);
+  }
+
+  @Test
+  public void shouldBeSharedPerSettings() {
+    assertThat(CxxReportLocator.forSettings(settings)).isSameAs(locator);
+    assertThat(CxxReportLocator.forSettings(new Settings())).isNotSameAs(locator);
+  }
+
+  @Test
+  public void shouldWalkTheBaseDirectoryOnceForAllRegisteredPatterns() {
+    settings.setProperty("key.rats", "rats-reports/*.xml");
+    locator.register("key.cppcheck", "cppcheck-reports/cppcheck-result-*.xml");
+    locator.register("key.rats", "whatever");
+    locator.register("key.valgrind", "valgrind-reports/valgrind-result-*.xml");
+
+    assertThat(locator.getReports(baseDir, "key.cppcheck", "cppcheck-reports/cppcheck-result-*.xml")).isNotEmpty();
+    assertThat(locator.getReports(baseDir, "key.rats", "whatever")).isNotEmpty();
+    assertThat(locator.getReports(baseDir, "key.valgrind", "valgrind-reports/valgrind-result-*.xml")).hasSize(1);
+    assertThat(locator.getWalks()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldAskTheRegisteredSensorsForTheirPatternsWhenLookingUp() {
+    // the sensor registers before its own fields are set
+    CxxReportSensor sensor = new ConfiguredSensor(settings, "key.valgrind", "valgrind-reports/valgrind-result-*.xml");
+
+    assertThat(locator.getReports(baseDir, "key.cppcheck", "cppcheck-reports/cppcheck-result-*.xml")).isNotEmpty();
+    assertThat(locator.getReports(baseDir, sensor.reportPathKey(), sensor.defaultReportPath())).hasSize(1);
+    assertThat(locator.getWalks()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldFindTheSameFilesAsAnt() {
+    String[] patterns = {
+      "cppcheck-reports/cppcheck-result-*.xml",
+      "**/*.xml",
+      "**/valgrind-reports/*",
+      "*-reports/**/coverage-?art*.xml",
+      "coverage-reports/",
+      "nothing/*.xml"
+    };
+    for (String pattern : patterns) {
+      assertThat(relativePaths(locator.getReports(baseDir, "", pattern)))
+          .as(pattern)
+          .isEqualTo(scanWithAnt(pattern));
+    }
+  }
+
+  @Test
+  public void shouldNotKeepTheSettingsAlive() throws InterruptedException {
+    Settings other = new Settings();
+    CxxReportLocator otherLocator = CxxReportLocator.forSettings(other);
+    WeakReference<Settings> reference = new WeakReference<Settings>(other);
+    other = null;
+    for (int i = 0; i < 20 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertThat(reference.get()).isNull();
+    assertThat(otherLocator.getReports(baseDir, "key.cppcheck", "nothing/*.xml")).isEmpty();
+  }
+
+  @Test
+  public void shouldNotFollowSymbolicLinkCycles() throws Exception {
+    File root = folder.newFolder("base");
+    File reports = new File(root, "reports");
+    assumeTrue(reports.mkdir() && new File(reports, "report.xml").createNewFile());
+    Process ln = new ProcessBuilder("ln", "-s", root.getAbsolutePath(), new File(reports, "loop").getPath()).start();
+    assumeTrue(ln.waitFor() == 0);
+
+    List<File> found = locator.getReports(root.getPath(), "", "**/*.xml");
+
+    assertThat(found).containsOnly(new File(reports, "report.xml"));
+  }
+
+  private List<String> relativePaths(List<File> files) {
+    List<String> paths = new ArrayList<String>();
+    for (File file : files) {
+      paths.add(file.getPath().substring(baseDir.length() + 1));
+    }
+    Collections.sort(paths);
+    return paths;
+  }
+
+  private List<String> scanWithAnt(String pattern) {
+    DirectoryScanner scanner = new DirectoryScanner();
+    scanner.setIncludes(new String[] {pattern});
+    scanner.setBasedir(new File(baseDir));
+    scanner.scan();
+    List<String> paths = new ArrayList<String>();
+    Collections.addAll(paths, scanner.getIncludedFiles());
+    Collections.sort(paths);
+    return paths;
+  }
+
+  private static class ConfiguredSensor extends CxxReportSensor {
+    private final String reportPathKey;
+    private final String defaultReportPath;
+
+    ConfiguredSensor(Settings conf, String reportPathKey, String defaultReportPath) {
+      super(conf);
+      this.reportPathKey = reportPathKey;
+      this.defaultReportPath = defaultReportPath;
+    }
+
+    @Override
+    protected String reportPathKey() {
+      return reportPathKey;
+    }
+
+    @Override
+    protected String defaultReportPath() {
+      return defaultReportPath;
+    }
+  }
+}
@@ -21,15 +21,30 @@ package org.sonar.plugins.cxx.utils;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
+import org.sonar.api.resources.Resource;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RuleFinder;
+import org.sonar.api.rules.RuleQuery;
+import org.sonar.api.rules.Violation;
 import org.sonar.plugins.cxx.CxxLanguage;
+import org.sonar.plugins.cxx.CxxPlugin;
 import org.sonar.plugins.cxx.TestUtils;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class CxxReportSensorTest {
@@ -43,6 +58,73 @@ public class CxxReportSensorTest {
     }
   };
 
+  private class CxxViolationSensorImpl extends CxxReportSensor {
+    CxxViolationSensorImpl(RuleFinder ruleFinder) {
+      super(ruleFinder, new Settings());
+    }
+
+    @Override
+    protected void processReport(Project project, SensorContext context, File report) {
+      String file = new File(project.getFileSystem().getBasedir(), "SampleProject/sources/utils/code_chunks.cpp").getPath();
+      saveViolation(project, context, "repo", file, 1, "rule", "msg 1");
+      saveViolation(project, context, "repo", file, 2, "rule", "msg 2");
+      saveViolation(project, context, "repo", file, 3, "unknown", "msg 3");
+      saveViolation(project, context, "repo", file, 4, "unknown", "msg 4");
+    }
+
+    @Override
+    protected String defaultReportPath() {
+      return VALID_REPORT_PATH;
+    }
+  };
+
+  private class CxxParallelSensorImpl extends CxxReportSensor {
+    CxxParallelSensorImpl(Settings conf) {
+      super(TestUtils.mockRuleFinder(), conf);
+    }
+
+    @Override
+    protected boolean canProcessReportsInParallel() {
+      return true;
+    }
+
+    @Override
+    protected void processReport(Project project, SensorContext context, File report) {
+      String file = new File(project.getFileSystem().getBasedir(), "SampleProject/sources/utils/code_chunks.cpp").getPath();
+      for (int line = 1; line <= 3; line++) {
+        saveViolation(project, context, "repo", file, line, "rule", report.getName());
+      }
+    }
+
+    @Override
+    protected String defaultReportPath() {
+      return "valgrind-reports/*.xml";
+    }
+  };
+
+  private class CxxDuplicatesSensorImpl extends CxxReportSensor {
+    CxxDuplicatesSensorImpl() {
+      super(TestUtils.mockRuleFinder(), new Settings());
+    }
+
+    @Override
+    protected void processReport(Project project, SensorContext context, File report) {
+      String basedir = project.getFileSystem().getBasedir().getPath();
+      String file = new File(basedir, "SampleProject/sources/utils/code_chunks.cpp").getPath();
+      String otherFile = new File(basedir, "SampleProject/sources/utils/utils.cpp").getPath();
+      saveViolation(project, context, "repo", file, 1, "rule", "msg");
+      saveViolation(project, context, "repo", otherFile, 1, "rule", "msg");
+      saveViolation(project, context, "repo", file, 1, "rule", "other msg");
+      String sameFile = new File(basedir, "SampleProject/sources/application/../utils/code_chunks.cpp").getPath();
+      saveViolation(project, context, "repo", sameFile, 1, "rule", "msg");
+    }
+
+    @Override
+    protected String defaultReportPath() {
+      return "valgrind-reports/*.xml";
+    }
+  };
+
   private CxxReportSensor sensor;
   private File baseDir;
 
@@ -105,6 +187,69 @@ public class CxxReportSensorTest {
     assertFound(reports);
   }
 
+  @Test
+  public void saveViolation_shouldLookupRulesAndFilesOnce() {
+    RuleFinder ruleFinder = mock(RuleFinder.class);
+    when(ruleFinder.find((RuleQuery) anyObject())).thenReturn(Rule.create("repo", "rule", "rule"), (Rule) null);
+    Project project = TestUtils.mockProject();
+    SensorContext context = mock(SensorContext.class);
+    when(context.getResource((Resource) anyObject())).thenReturn(new org.sonar.api.resources.File("code_chunks.cpp"));
+
+    new CxxViolationSensorImpl(ruleFinder).analyse(project, context);
+
+    verify(ruleFinder, times(2)).find((RuleQuery) anyObject());
+    verify(context, times(1)).getResource((Resource) anyObject());
+    verify(context, times(2)).saveViolation((Violation) anyObject());
+  }
+
+  @Test
+  public void analyse_shouldSaveInReportOrderWhenParallel() {
+    Settings conf = new Settings();
+    conf.setProperty(CxxPlugin.REPORT_THREADS_KEY, "3");
+
+    List<String> sequential = savedViolations(new CxxParallelSensorImpl(new Settings()));
+    List<String> parallel = savedViolations(new CxxParallelSensorImpl(conf));
+
+    assertThat(sequential).hasSize(12);
+    assertThat(parallel).isEqualTo(sequential);
+  }
+
+  @Test
+  public void analyse_shouldSaveIdenticalViolationsOnceGroupedByFile() {
+    SensorContext context = mock(SensorContext.class);
+    when(context.getResource((Resource) anyObject())).thenAnswer(new Answer<Resource>() {
+      public Resource answer(InvocationOnMock invocation) {
+        return (Resource) invocation.getArguments()[0];
+      }
+    });
+
+    // all four reports give the same violations, one of them through a
+    // different spelling of the same file
+    new CxxDuplicatesSensorImpl().analyse(TestUtils.mockProject(), context);
+
+    ArgumentCaptor<Violation> captor = ArgumentCaptor.forClass(Violation.class);
+    verify(context, times(3)).saveViolation(captor.capture());
+    List<String> messages = new ArrayList<String>();
+    for (Violation violation : captor.getAllValues()) {
+      messages.add(violation.getMessage());
+    }
+    assertThat(messages).containsExactly("msg", "other msg", "msg");
+  }
+
+  private static List<String> savedViolations(CxxReportSensor sensor) {
+    SensorContext context = mock(SensorContext.class);
+    when(context.getResource((Resource) anyObject())).thenReturn(new org.sonar.api.resources.File("code_chunks.cpp"));
+    sensor.analyse(TestUtils.mockProject(), context);
+
+    ArgumentCaptor<Violation> captor = ArgumentCaptor.forClass(Violation.class);
+    verify(context, times(12)).saveViolation(captor.capture());
+    List<String> violations = new ArrayList<String>();
+    for (Violation violation : captor.getAllValues()) {
+      violations.add(violation.getMessage() + ":" + violation.getLineId());
+    }
+    return violations;
+  }
+
   private void assertFound(List<File> reports) {
     assert (reports != null);
     assert (reports.size() == 1);
@@ -62,6 +62,13 @@ public class ValgrindErrorTest {
     assert (!error.equals(otherError));
   }
 
+  @Test
+  public void errorsWithDifferentStacksAreNotEqual() {
+    ValgrindStack stack = new ValgrindStack();
+    stack.addFrame(new ValgrindFrame("", "", "fn", "", "file", 1));
+    assert (!error.equals(new ValgrindError("kind", "text", stack)));
+  }
+
   @Test
   public void errorHashWorksAsExpected() {
     assert (error.hashCode() == equalError.hashCode());
@@ -24,6 +24,9 @@ import org.junit.Test;
 import org.sonar.plugins.cxx.TestUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
@@ -43,6 +46,19 @@ public class ValgrindReportParserTest {
     assertEquals(valgrindErrors.size(), 6);
   }
 
+  @Test
+  public void shouldStreamEveryErrorOfTheReport() throws javax.xml.stream.XMLStreamException {
+    File report = TestUtils.loadResource("valgrind-reports/valgrind-result-SAMPLE.xml");
+    final List<ValgrindError> valgrindErrors = new ArrayList<ValgrindError>();
+    parser.parseReport(report, new ValgrindReportParser.ErrorHandler() {
+      public void handleError(ValgrindError error) {
+        valgrindErrors.add(error);
+      }
+    });
+    assertEquals(valgrindErrors.size(), 13);
+    assertEquals(new HashSet<ValgrindError>(valgrindErrors).size(), 6);
+  }
+
   @Test(expected = javax.xml.stream.XMLStreamException.class)
   public void shouldThrowWhenGivenAnIncompleteReport_1() throws javax.xml.stream.XMLStreamException {
     // error contains no kind-tag
@@ -81,6 +81,13 @@ public class ValgrindStackTest {
     assert (stack.hashCode() != otherStack.hashCode());
   }
 
+  @Test
+  public void stackFingerprintWorksAsExpected() {
+    assert (stack.getFingerprint() == equalStack.getFingerprint());
+    assert (stack.getFingerprint() != otherStack.getFingerprint());
+    assert (stack.getFingerprint() != new ValgrindStack().getFingerprint());
+  }
+
   @Test
   public void stringRepresentationShouldResembleValgrindsStandard() {
     Map<String, ValgrindStack> ioMap = new HashMap<String, ValgrindStack>();
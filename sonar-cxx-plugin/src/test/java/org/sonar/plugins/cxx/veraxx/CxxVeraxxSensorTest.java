@@ -21,6 +21,8 @@ package org.sonar.plugins.cxx.veraxx;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
@@ -50,8 +52,13 @@ public class CxxVeraxxSensorTest {
     RuleFinder ruleFinder = TestUtils.mockRuleFinder();
     sensor = new CxxVeraxxSensor(ruleFinder, new Settings(), mock(RulesProfile.class));
     context = mock(SensorContext.class);
-    org.sonar.api.resources.File resourceMock = mock(org.sonar.api.resources.File.class);
-    when(context.getResource((org.sonar.api.resources.File) anyObject())).thenReturn(resourceMock);
+    // the files are resolved once per path, so every file gets its own resource
+    when(context.getResource((org.sonar.api.resources.File) anyObject())).thenAnswer(
+        new Answer<org.sonar.api.resources.File>() {
+          public org.sonar.api.resources.File answer(InvocationOnMock invocation) {
+            return mock(org.sonar.api.resources.File.class);
+          }
+        });
   }
 
   @Test
@@ -19,6 +19,7 @@
  */
 package org.sonar.plugins.cxx.xunit;
 
+import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.sonar.api.batch.SensorContext;
@@ -29,11 +30,14 @@ import org.sonar.api.resources.Project;
 import org.sonar.plugins.cxx.TestUtils;
 
 import java.io.File;
+import java.io.InputStream;
 
+import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyDouble;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -110,9 +114,43 @@ public class CxxXunitSensorTest {
     sensor = new CxxXunitSensor(config, TestUtils.mockCxxLanguage());
     File reportBefore = cppunitReport();
 
-    File reportAfter = sensor.transformReport(reportBefore);
+    InputStream reportAfter = sensor.transformReport(reportBefore);
+    try {
+      assertThat(IOUtils.toString(reportAfter)).contains("<testsuite");
+    } finally {
+      IOUtils.closeQuietly(reportAfter);
+    }
+    assertThat(new File(reportBefore.getPath() + ".after_xslt")).doesNotExist();
+  }
+
+  @Test(expected = java.io.IOException.class)
+  public void transformReport_shouldThrowWhenTheTransformationFails()
+      throws java.io.IOException, javax.xml.transform.TransformerException
+  {
+    Settings config = new Settings();
+    config.setProperty(CxxXunitSensor.XSLT_URL_KEY, "cppunit-1.x-to-junit-1.0.xsl");
+    sensor = new CxxXunitSensor(config, TestUtils.mockCxxLanguage());
+
+    // the report ends within an element
+    InputStream reportAfter = sensor.transformReport(new File(cppunitReport().getParentFile(), "malformed-report.xml"));
+    try {
+      IOUtils.toString(reportAfter);
+    } finally {
+      IOUtils.closeQuietly(reportAfter);
+    }
+  }
 
-    assert (reportAfter != reportBefore);
+  @Test
+  public void analyse_shouldParseTransformedReports() {
+    Settings config = new Settings();
+    config.setProperty(CxxXunitSensor.REPORT_PATH_KEY, "xunit-reports/cppunit-report.xml");
+    config.setProperty(CxxXunitSensor.XSLT_URL_KEY, "cppunit-1.x-to-junit-1.0.xsl");
+    sensor = new CxxXunitSensor(config, TestUtils.mockCxxLanguage());
+
+    sensor.analyse(project, context);
+
+    verify(context, atLeastOnce()).saveMeasure((org.sonar.api.resources.File) anyObject(),
+        eq(CoreMetrics.TESTS), anyDouble());
   }
 
   File cppunitReport() {
@@ -121,4 +121,28 @@ public class TestSuiteTest {
 
     assertEquals(suite.getSkipped(), skippedBefore + 1);
   }
+
+  @Test
+  public void detailsShouldBeLimitedToTheGivenNumberOfTestCases() {
+    TestSuite limitedSuite = new TestSuite("key", 0, 1, false);
+    limitedSuite.addTestCase(new TestCase("first", 1, "ok", "", ""));
+    limitedSuite.addTestCase(new TestCase("second", 1, "ok", "", ""));
+
+    assertEquals(limitedSuite.getTests(), 2);
+    assertEquals(limitedSuite.getDetails(),
+        "<tests-details><testcase status=\"ok\" time=\"1\" name=\"first\"/></tests-details>");
+  }
+
+  @Test
+  public void compactDetailsShouldContainFailedTestCasesOnly() {
+    TestSuite compactSuite = new TestSuite("key", 3, 0, true);
+    compactSuite.addTestCase(new TestCase("passed", 1, "ok", "", ""));
+    compactSuite.addTestCase(new TestCase("failed", 1, "failure", "stack", "msg"));
+
+    assertEquals(compactSuite.getTests(), 2);
+    assertEquals(compactSuite.getFailures(), 1);
+    assertEquals(compactSuite.getDetails(),
+        "<tests-details><testcase status=\"failure\" time=\"1\" name=\"failed\">"
+          + "<failure message=\"msg\"><![CDATA[sta...]]></failure></testcase></tests-details>");
+  }
 }
@@ -1,4 +1,4 @@
-//LCOM4 = 3.0
+//LCOM4 = 5.0
 class HighCohesion
 {
 	int a;
@@ -1,4 +1,4 @@
-//LCOM4 = 3.0
+//LCOM4 = 2.0
 class LowCohesion
 {
 public:
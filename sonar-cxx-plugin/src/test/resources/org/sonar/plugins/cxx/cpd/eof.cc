@@ -0,0 +1,3 @@
+int atEnd(int c) {
+  return c == EOF;
+}